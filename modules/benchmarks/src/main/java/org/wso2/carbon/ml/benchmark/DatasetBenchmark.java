@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Throughput and latency of the dataset exploration endpoints for a dataset which is already uploaded and processed
+ * on the server. The defaults match the Pima Indians Diabetes dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatasetBenchmark {
+
+    @Param("1")
+    public int datasetId;
+
+    @Param("1")
+    public int versionSetId;
+
+    @Param("Age")
+    public String xAxisFeature;
+
+    @Param("NumPregnancies")
+    public String yAxisFeature;
+
+    @Param("Class")
+    public String groupByFeature;
+
+    @Param("2")
+    public int noOfClusters;
+
+    @Benchmark
+    public int versionSet(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet("/api/datasets/versions/" + versionSetId));
+    }
+
+    @Benchmark
+    public int charts(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet("/api/datasets/versions/" + versionSetId
+                + "/charts?features=" + xAxisFeature + "," + yAxisFeature));
+    }
+
+    @Benchmark
+    public int scatter(MLServer server) throws MLHttpClientException {
+        String payload = "{\"xAxisFeature\":\"" + xAxisFeature + "\",\"yAxisFeature\":\"" + yAxisFeature
+                + "\",\"groupByFeature\":\"" + groupByFeature + "\"}";
+        return MLServer.consume(server.getClient().doHttpPost("/api/datasets/versions/" + versionSetId
+                + "/scatter", payload));
+    }
+
+    @Benchmark
+    public int cluster(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet("/api/datasets/" + datasetId + "/cluster?features="
+                + xAxisFeature + "," + yAxisFeature + "&noOfClusters=" + noOfClusters));
+    }
+}
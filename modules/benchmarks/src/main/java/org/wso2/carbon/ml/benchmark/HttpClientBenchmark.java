@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Measures the request overhead of {@link MLHttpClient} on a cheap endpoint, with the shared connection pool and
+ * with a new client (and so a new connection and TLS handshake) per request.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HttpClientBenchmark {
+
+    private static final String RESOURCE_PATH = "/api/configs/algorithms";
+
+    @Benchmark
+    public int pooledClient(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet(RESOURCE_PATH));
+    }
+
+    @Benchmark
+    public int newClientPerRequest(MLServer server) throws MLHttpClientException {
+        MLHttpClient mlHttpClient = new MLHttpClient(server.serverUrl, server.userName, server.password, 1, 1);
+        try {
+            return MLServer.consume(mlHttpClient.doHttpGet(RESOURCE_PATH));
+        } finally {
+            mlHttpClient.close();
+        }
+    }
+}
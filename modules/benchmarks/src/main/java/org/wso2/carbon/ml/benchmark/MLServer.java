@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.io.IOException;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Connection to a running ML server, shared by all the benchmark threads. The server must be started separately, and
+ * its certificate trusted through -Djavax.net.ssl.trustStore.
+ */
+@State(Scope.Benchmark)
+public class MLServer {
+
+    @Param("https://localhost:9443")
+    public String serverUrl;
+
+    @Param("admin")
+    public String userName;
+
+    @Param("admin")
+    public String password;
+
+    private MLHttpClient mlHttpClient;
+
+    @Setup(Level.Trial)
+    public void connect() {
+        mlHttpClient = new MLHttpClient(serverUrl, userName, password, MLHttpClient.DEFAULT_MAX_CONNECTIONS,
+                MLHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws MLHttpClientException {
+        mlHttpClient.close();
+    }
+
+    public MLHttpClient getClient() {
+        return mlHttpClient;
+    }
+
+    /**
+     * Read the whole response body, release the connection and fail on an unsuccessful response, so that errors are
+     * not measured as fast requests.
+     *
+     * @param response  Response to consume
+     * @return          Length of the response body
+     * @throws          MLHttpClientException
+     */
+    public static int consume(CloseableHttpResponse response) throws MLHttpClientException {
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String body = EntityUtils.toString(response.getEntity());
+            response.close();
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new MLHttpClientException("Unexpected response " + statusCode + ": " + body);
+            }
+            return body.length();
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to read the response.", e);
+        }
+    }
+}
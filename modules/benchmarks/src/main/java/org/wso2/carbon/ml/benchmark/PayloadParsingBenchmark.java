@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.carbon.ml.integration.common.utils.MLNumericArrayParser;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Compares parsing numeric prediction payloads and undecoded predictions with org.json against
+ * {@link MLNumericArrayParser}. Does not need a running server. One operation parses a whole payload, so rows per
+ * second is the score multiplied by the number of rows. Run with -prof gc to see the allocations per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PayloadParsingBenchmark {
+
+    private static final String[] DIABETES_ROWS = { "[6,148,72,35,0,33.6,0.627,50]", "[1,89,66,23,94,28.1,0.167,21]",
+            "[2,197,70,45,543,30.5,0.158,53]", "[8,183,64,0,0,23.3,0.672,32]" };
+    private static final int FEATURES = 8;
+
+    @Param({ "1", "100", "10000" })
+    public int rows;
+
+    private String payload;
+    private String predictions;
+    private MLNumericArrayParser parser;
+    private double[] rowBuffer;
+    private RowConsumer rowConsumer;
+    private double[] predictionBuffer;
+
+    @Setup
+    public void createPayload() {
+        StringBuilder payloadBuilder = new StringBuilder("[");
+        StringBuilder predictionsBuilder = new StringBuilder("[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                payloadBuilder.append(',');
+                predictionsBuilder.append(',');
+            }
+            payloadBuilder.append(DIABETES_ROWS[i % DIABETES_ROWS.length]);
+            predictionsBuilder.append(i % 3 == 0 ? "1.0" : "0.0");
+        }
+        payload = payloadBuilder.append(']').toString();
+        predictions = predictionsBuilder.append(']').toString();
+        parser = new MLNumericArrayParser();
+        rowBuffer = new double[FEATURES];
+        rowConsumer = new RowConsumer();
+        predictionBuffer = new double[rows];
+    }
+
+    @Benchmark
+    public void payloadWithJsonArray(Blackhole blackhole) throws JSONException {
+        JSONArray array = new JSONArray(payload);
+        for (int i = 0; i < array.length(); i++) {
+            JSONArray row = array.getJSONArray(i);
+            for (int j = 0; j < row.length(); j++) {
+                blackhole.consume(row.getDouble(j));
+            }
+        }
+    }
+
+    @Benchmark
+    public void payloadWithNumericParser(Blackhole blackhole) throws MLHttpClientException {
+        rowConsumer.blackhole = blackhole;
+        blackhole.consume(parser.parseRows(payload, rowBuffer, rowConsumer));
+    }
+
+    @Benchmark
+    public void predictionsWithJsonArray(Blackhole blackhole) throws JSONException {
+        JSONArray array = new JSONArray(predictions);
+        for (int i = 0; i < array.length(); i++) {
+            blackhole.consume(array.getDouble(i));
+        }
+    }
+
+    @Benchmark
+    public double[] predictionsWithNumericParser() throws MLHttpClientException {
+        parser.parseArray(predictions, predictionBuffer);
+        return predictionBuffer;
+    }
+
+    /**
+     * Consumes the parsed values like the JSONArray benchmarks do. Kept in the state so that the numeric parser
+     * benchmark does not allocate a handler per operation.
+     */
+    private static class RowConsumer implements MLNumericArrayParser.RowHandler {
+
+        private Blackhole blackhole;
+
+        @Override
+        public void handleRow(int rowIndex, double[] values, int length) {
+            for (int j = 0; j < length; j++) {
+                blackhole.consume(values[j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * End-to-end prediction throughput and latency of /api/models/{id}/predict for a model which is already built on the
+ * server, e.g. by one of the samples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PredictionBenchmark {
+
+    // A row of the Pima Indians Diabetes dataset, as in the logistic regression sample
+    private static final String DEFAULT_PAYLOAD = "[[6,148,72,35,0,33.6,0.627,50]]";
+
+    @Param("1")
+    public long modelId;
+
+    /**
+     * File with the JSON payload to predict for, e.g. modules/samples/default/k-means/prediction-test. The diabetes
+     * sample row is used when empty.
+     */
+    @Param("")
+    public String predictionFile;
+
+    @Param("false")
+    public boolean skipDecoding;
+
+    private String resourcePath;
+    private String payload;
+
+    @Setup
+    public void readPayload() throws IOException {
+        resourcePath = "/api/models/" + modelId + "/predict" + (skipDecoding ? "?skipDecoding=true" : "");
+        payload = predictionFile.isEmpty() ? DEFAULT_PAYLOAD : new String(Files.readAllBytes(Paths
+                .get(predictionFile)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int predict(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpPost(resourcePath, payload));
+    }
+}
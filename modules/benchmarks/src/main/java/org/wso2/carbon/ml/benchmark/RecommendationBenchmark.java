@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * End-to-end throughput and latency of the recommendation endpoints for a collaborative filtering model which is
+ * already built on the server, e.g. by the collaborative-filtering sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecommendationBenchmark {
+
+    @Param("1")
+    public long modelId;
+
+    @Param("1")
+    public int userId;
+
+    @Param("123")
+    public int productId;
+
+    @Param("3")
+    public int count;
+
+    @Benchmark
+    public int productRecommendations(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet("/api/models/" + modelId
+                + "/product-recommendations?user-id=" + userId + "&no-of-products=" + count));
+    }
+
+    @Benchmark
+    public int userRecommendations(MLServer server) throws MLHttpClientException {
+        return MLServer.consume(server.getClient().doHttpGet("/api/models/" + modelId
+                + "/user-recommendations?product-id=" + productId + "&no-of-users=" + count));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Latencies of each endpoint and throughput of each algorithm, collected from all the load generator threads.
+ * Latencies are recorded in microseconds, from sending the request until the whole response body has been read.
+ */
+public class LoadStatistics {
+
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toMicros(10);
+    private static final long HIGHEST_TRACKABLE_BUILD_TIME = TimeUnit.HOURS.toMillis(2);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private ConcurrentMap<String, EndpointStatistics> endpoints = new ConcurrentHashMap<String, EndpointStatistics>();
+    private ConcurrentMap<String, AlgorithmStatistics> algorithms =
+            new ConcurrentHashMap<String, AlgorithmStatistics>();
+
+    /**
+     * Read the response body, record the latency of the request and release the connection.
+     *
+     * @param endpoint      Endpoint the request was sent to, e.g. "POST /api/models/{id}/predict"
+     * @param startNanos    {@link System#nanoTime()} before the request was sent
+     * @param response      Response to the request
+     * @return              Response body
+     * @throws              MLHttpClientException if the response could not be read or is not successful
+     */
+    public String complete(String endpoint, long startNanos, CloseableHttpResponse response)
+            throws MLHttpClientException {
+        EndpointStatistics statistics = getEndpoint(endpoint);
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            String body = entity != null ? EntityUtils.toString(entity) : "";
+            statistics.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+                    HIGHEST_TRACKABLE_LATENCY));
+            if (statusCode < 200 || statusCode >= 300) {
+                statistics.errors.incrementAndGet();
+                throw new MLHttpClientException(endpoint + " returned " + statusCode + ": " + body);
+            }
+            return body;
+        } catch (IOException e) {
+            statistics.errors.incrementAndGet();
+            throw new MLHttpClientException("Failed to read the response of " + endpoint, e);
+        } finally {
+            try {
+                response.close();
+            } catch (IOException ignored) {
+                // the connection is discarded by the pool
+            }
+        }
+    }
+
+    /**
+     * Record a request which failed before a response was received.
+     */
+    public void failed(String endpoint) {
+        getEndpoint(endpoint).errors.incrementAndGet();
+    }
+
+    public void flowCompleted(String algorithm, long buildTimeMillis) {
+        AlgorithmStatistics statistics = getAlgorithm(algorithm);
+        statistics.flows.incrementAndGet();
+        statistics.buildTime.recordValue(Math.min(buildTimeMillis, HIGHEST_TRACKABLE_BUILD_TIME));
+    }
+
+    public void flowFailed(String algorithm) {
+        getAlgorithm(algorithm).failedFlows.incrementAndGet();
+    }
+
+    /**
+     * Record a successful predict (or recommendation) request of a built model.
+     *
+     * @param algorithm     Algorithm of the model
+     * @param startNanos    {@link System#nanoTime()} before the request was sent
+     */
+    public void scored(String algorithm, long startNanos) {
+        AlgorithmStatistics statistics = getAlgorithm(algorithm);
+        statistics.scoringRequests.incrementAndGet();
+        statistics.scoringTimeNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Print the latency percentiles of each endpoint and the throughput of each algorithm. The scoring throughput
+     * is over the time spent scoring, i.e. the rate at which a single flow scores its model.
+     *
+     * @param out               Stream to print to
+     * @param elapsedMillis     Duration of the run
+     */
+    public void report(PrintStream out, long elapsedMillis) {
+        double elapsedSeconds = Math.max(elapsedMillis, 1) / 1000.0;
+        out.println();
+        out.println("Latency per endpoint (ms)");
+        out.println(String.format("%-48s %8s %7s %9s %9s %9s %9s %9s", "Endpoint", "Count", "Errors", "p50", "p90",
+                "p99", "p99.9", "Max"));
+        for (Map.Entry<String, EndpointStatistics> entry : new TreeMap<String, EndpointStatistics>(endpoints)
+                .entrySet()) {
+            Histogram latency = entry.getValue().latency.copy();
+            out.println(String.format("%-48s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f", entry.getKey(),
+                    latency.getTotalCount(), entry.getValue().errors.get(), millis(latency, 50),
+                    millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1000.0));
+        }
+
+        out.println();
+        out.println(String.format("Throughput per algorithm over %.1f s", elapsedSeconds));
+        out.println(String.format("%-32s %7s %7s %12s %14s %14s", "Algorithm", "Flows", "Failed", "Scoring/s",
+                "Build p50 (s)", "Build max (s)"));
+        for (Map.Entry<String, AlgorithmStatistics> entry : new TreeMap<String, AlgorithmStatistics>(algorithms)
+                .entrySet()) {
+            AlgorithmStatistics statistics = entry.getValue();
+            Histogram buildTime = statistics.buildTime.copy();
+            long scoringTimeNanos = statistics.scoringTimeNanos.get();
+            double scoringRate = scoringTimeNanos > 0 ? statistics.scoringRequests.get()
+                    / (scoringTimeNanos / (double) TimeUnit.SECONDS.toNanos(1)) : 0;
+            out.println(String.format("%-32s %7d %7d %12.2f %14.2f %14.2f", entry.getKey(), statistics.flows.get(),
+                    statistics.failedFlows.get(), scoringRate,
+                    buildTime.getValueAtPercentile(50) / 1000.0, buildTime.getMaxValue() / 1000.0));
+        }
+    }
+
+    private static double millis(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private EndpointStatistics getEndpoint(String endpoint) {
+        EndpointStatistics statistics = endpoints.get(endpoint);
+        if (statistics == null) {
+            EndpointStatistics created = new EndpointStatistics();
+            statistics = endpoints.putIfAbsent(endpoint, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+        return statistics;
+    }
+
+    private AlgorithmStatistics getAlgorithm(String algorithm) {
+        AlgorithmStatistics statistics = algorithms.get(algorithm);
+        if (statistics == null) {
+            AlgorithmStatistics created = new AlgorithmStatistics();
+            statistics = algorithms.putIfAbsent(algorithm, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+        return statistics;
+    }
+
+    private static class EndpointStatistics {
+        private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    private static class AlgorithmStatistics {
+        private final Histogram buildTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_BUILD_TIME, SIGNIFICANT_DIGITS);
+        private final AtomicLong flows = new AtomicLong();
+        private final AtomicLong failedFlows = new AtomicLong();
+        private final AtomicLong scoringRequests = new AtomicLong();
+        private final AtomicLong scoringTimeNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Replays the flows of the samples in modules/samples against a running ML server, as the model-generation.sh
+ * scripts do, with a configurable number of concurrent flows, arrival rate and duration. Reports the latency
+ * percentiles of each endpoint and the throughput of each algorithm at the end of the run.
+ * <p>
+ * With --rate=0 (the default), each of the --concurrency threads starts a new flow as soon as its previous flow ends.
+ * Otherwise flows are started at the given rate per second regardless of the response times, and arrivals are
+ * dropped (and counted) while all the threads are busy and the backlog is full.
+ */
+public class MLLoadGenerator {
+
+    private static final Log log = LogFactory.getLog(MLLoadGenerator.class);
+
+    private static final String USAGE = "Usage: java -cp ml-benchmarks.jar " + MLLoadGenerator.class.getName()
+            + " --samples=<sample or samples directory>[,...] [--server=https://localhost:9443] [--user=admin]"
+            + " [--password=admin] [--concurrency=1] [--rate=0] [--duration=300] [--scoring-requests=100]"
+            + " [--build-timeout=600] [--clean-up=true]";
+
+    private List<SampleFlow> flows;
+    private MLHttpClient mlHttpClient;
+    private LoadStatistics statistics = new LoadStatistics();
+    private int concurrency;
+    private double rate;
+    private long durationMillis;
+    private int scoringRequests;
+    private long buildTimeoutMillis;
+    private boolean cleanUp;
+    private String runPrefix = Long.toString(System.currentTimeMillis(), 36);
+    private AtomicLong runs = new AtomicLong();
+    private AtomicLong droppedArrivals = new AtomicLong();
+    private volatile long deadline;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("samples")) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        MLLoadGenerator generator = new MLLoadGenerator();
+        generator.flows = loadFlows(options.get("samples"));
+        generator.concurrency = Integer.parseInt(option(options, "concurrency", "1"));
+        generator.rate = Double.parseDouble(option(options, "rate", "0"));
+        generator.durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(option(options, "duration", "300")));
+        generator.scoringRequests = Integer.parseInt(option(options, "scoring-requests", "100"));
+        generator.buildTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(option(options, "build-timeout",
+                "600")));
+        generator.cleanUp = Boolean.parseBoolean(option(options, "clean-up", "true"));
+        generator.mlHttpClient = new MLHttpClient(option(options, "server", "https://localhost:9443"), option(
+                options, "user", "admin"), option(options, "password", "admin"), generator.concurrency * 2,
+                generator.concurrency * 2);
+        try {
+            generator.run();
+        } finally {
+            generator.mlHttpClient.close();
+        }
+    }
+
+    /**
+     * Run flows until the duration elapses, wait for the running flows to end and print the report.
+     */
+    public void run() throws InterruptedException {
+        log.info("Running " + flows.size() + " sample flows for " + TimeUnit.MILLISECONDS.toSeconds(durationMillis)
+                + " s with " + concurrency + " concurrent flows" + (rate > 0 ? " at " + rate + " flows/s" : ""));
+        long start = System.currentTimeMillis();
+        deadline = start + durationMillis;
+        ExecutorService workers;
+        if (rate > 0) {
+            workers = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(concurrency), new RejectedExecutionHandler() {
+                        @Override
+                        public void rejectedExecution(Runnable flow, ThreadPoolExecutor executor) {
+                            droppedArrivals.incrementAndGet();
+                        }
+                    });
+            ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+            final ExecutorService flowExecutor = workers;
+            arrivals.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    flowExecutor.execute(new FlowRunner(false));
+                }
+            }, 0, (long) (TimeUnit.SECONDS.toNanos(1) / rate), TimeUnit.NANOSECONDS);
+            Thread.sleep(durationMillis);
+            arrivals.shutdownNow();
+        } else {
+            workers = Executors.newFixedThreadPool(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(new FlowRunner(true));
+            }
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(durationMillis + buildTimeoutMillis * 2, TimeUnit.MILLISECONDS)) {
+            log.warn("Flows still running at the end of the run are not reported.");
+            workers.shutdownNow();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        statistics.report(System.out, elapsed);
+        if (droppedArrivals.get() > 0) {
+            System.out.println();
+            System.out.println("Dropped arrivals: " + droppedArrivals.get());
+        }
+    }
+
+    /**
+     * Runs the next flow, round robin over the samples, and repeats until the deadline if looping.
+     */
+    private class FlowRunner implements Runnable {
+
+        private boolean loop;
+
+        FlowRunner(boolean loop) {
+            this.loop = loop;
+        }
+
+        @Override
+        public void run() {
+            do {
+                long run = runs.getAndIncrement();
+                SampleFlow flow = flows.get((int) (run % flows.size()));
+                try {
+                    flow.run(mlHttpClient, statistics, "load-" + runPrefix + "-" + run, scoringRequests,
+                            buildTimeoutMillis, cleanUp);
+                } catch (MLHttpClientException e) {
+                    statistics.flowFailed(flow.getAlgorithmName());
+                    log.error("Flow " + run + " of sample " + flow.getName() + " failed: " + e.getMessage(), e);
+                }
+            } while (loop && System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted());
+        }
+    }
+
+    /**
+     * Load the given sample directories. A directory without a create-project file is treated as a directory of
+     * samples, e.g. modules/samples/default.
+     */
+    private static List<SampleFlow> loadFlows(String directories) throws IOException {
+        List<SampleFlow> flows = new ArrayList<SampleFlow>();
+        for (String path : directories.split(",")) {
+            File directory = new File(path.trim());
+            if (new File(directory, "create-project").isFile()) {
+                flows.add(SampleFlow.load(directory));
+                continue;
+            }
+            File[] samples = directory.listFiles();
+            if (samples == null) {
+                throw new IOException("Not a directory: " + directory);
+            }
+            Arrays.sort(samples);
+            for (File sample : samples) {
+                if (new File(sample, "create-project").isFile()) {
+                    try {
+                        flows.add(SampleFlow.load(sample));
+                    } catch (IOException e) {
+                        log.warn("Skipping sample " + sample.getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (flows.isEmpty()) {
+            throw new IOException("No samples found in " + directories);
+        }
+        return flows;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + "\n" + USAGE);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.containsKey(name) ? options.get(name) : defaultValue;
+    }
+}
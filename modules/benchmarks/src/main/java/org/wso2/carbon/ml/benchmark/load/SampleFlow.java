@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.benchmark.load;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
+import org.wso2.carbon.ml.integration.common.utils.MLIntegrationTestConstants;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * The create-dataset, project, analysis, configuration, model and predict flow of one of the samples in
+ * modules/samples, read from the same JSON files as its model-generation.sh script. Each run uses its own dataset,
+ * project, analysis and model names, so that runs can overlap.
+ */
+public class SampleFlow {
+
+    private static final String RECOMMENDATION = "Recommendation";
+    private static final int STATUS_POLL_FREQUENCY = 2000;
+    // Same as MLHttpClient#setFeatureDefaults, for samples without customized features
+    private static final String DEFAULT_FEATURES = "{\"include\" : true,\"imputeOption\": \"DISCARD\"}";
+    // Anomaly detection models need a percentile to predict; same default as the anomaly detection samples
+    private static final String ANOMALY_DETECTION_PREFIX = "K_MEANS_ANOMALY_DETECTION";
+    private static final String DEFAULT_PERCENTILE = "98";
+    private static final Pattern PERCENTILE = Pattern.compile("/predict\\?percentile=(\\d+)");
+
+    private String name;
+    private File dataset;
+    private JSONObject project;
+    private JSONObject analysis;
+    private JSONObject model;
+    private String modelConfiguration;
+    private String customizedFeatures;
+    private String hyperParameters;
+    private String predictionPayload;
+    private String predictionQuery = "";
+    private String algorithmName;
+    private boolean recommendation;
+
+    /**
+     * Read a sample directory, e.g. modules/samples/default/k-means.
+     *
+     * @param directory Directory of the sample
+     * @return          Flow of the sample
+     * @throws          IOException if a file of the sample is missing or invalid
+     */
+    public static SampleFlow load(File directory) throws IOException {
+        SampleFlow flow = new SampleFlow();
+        flow.name = directory.getName();
+        File[] datasets = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().toLowerCase().endsWith(".csv");
+            }
+        });
+        if (datasets == null || datasets.length != 1) {
+            throw new IOException("Expected a single CSV dataset in " + directory);
+        }
+        flow.dataset = datasets[0];
+        try {
+            flow.project = new JSONObject(read(directory, "create-project"));
+            flow.analysis = new JSONObject(read(directory, "create-analysis"));
+            flow.model = new JSONObject(read(directory, "create-model"));
+            flow.modelConfiguration = read(directory, "create-model-config");
+            flow.customizedFeatures = readIfExists(directory, "customized-features");
+            if (flow.customizedFeatures == null) {
+                flow.customizedFeatures = DEFAULT_FEATURES;
+            }
+            flow.hyperParameters = readIfExists(directory, "hyper-parameters");
+            flow.predictionPayload = readIfExists(directory, "prediction-test");
+
+            JSONArray configuration = new JSONArray(flow.modelConfiguration);
+            for (int i = 0; i < configuration.length(); i++) {
+                JSONObject entry = configuration.getJSONObject(i);
+                if ("algorithmName".equals(entry.getString("key"))) {
+                    flow.algorithmName = entry.getString("value");
+                } else if ("algorithmType".equals(entry.getString("key"))) {
+                    flow.recommendation = RECOMMENDATION.equals(entry.getString("value"));
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid sample in " + directory, e);
+        }
+        if (flow.algorithmName == null) {
+            throw new IOException("No algorithmName in " + directory + "/create-model-config");
+        }
+        if (flow.predictionPayload == null && !flow.recommendation) {
+            throw new IOException("No prediction-test in " + directory);
+        }
+        if (flow.algorithmName.startsWith(ANOMALY_DETECTION_PREFIX)) {
+            flow.predictionQuery = "?percentile=" + readPercentile(directory);
+        }
+        return flow;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /**
+     * Run the flow once: upload the dataset, build a model from it, send the scoring requests to the model and
+     * optionally delete the project and the dataset.
+     *
+     * @param mlHttpClient      Client to send the requests with
+     * @param statistics        Statistics to record the requests in
+     * @param runId             Suffix for the names of the dataset, project, analysis and model
+     * @param scoringRequests   Number of predict (or recommendation) requests to send once the model is built
+     * @param buildTimeout      Maximum time to wait for the dataset to be processed and the model to be built
+     * @param cleanUp           Whether to delete the project and the dataset afterwards
+     * @throws                  MLHttpClientException
+     */
+    public void run(MLHttpClient mlHttpClient, LoadStatistics statistics, String runId, int scoringRequests,
+            long buildTimeout, boolean cleanUp) throws MLHttpClientException {
+        String datasetName = project.optString("datasetName") + "-" + runId;
+        String projectName = project.optString("name") + "-" + runId;
+        String analysisName = analysis.optString("name") + "-" + runId;
+        int projectId = -1;
+        int datasetId = -1;
+        try {
+            upload(mlHttpClient, statistics, datasetName);
+
+            JSONObject projectPayload = new JSONObject(project.toString()).put("name", projectName)
+                    .put("datasetName", datasetName);
+            post(mlHttpClient, statistics, "POST /api/projects", "/api/projects", projectPayload.toString());
+            JSONObject createdProject = new JSONObject(get(mlHttpClient, statistics, "GET /api/projects/{name}",
+                    "/api/projects/" + projectName));
+            projectId = createdProject.getInt("id");
+            datasetId = createdProject.getInt("datasetId");
+
+            JSONObject analysisPayload = new JSONObject(analysis.toString()).put("name", analysisName)
+                    .put("projectId", projectId);
+            post(mlHttpClient, statistics, "POST /api/analyses", "/api/analyses", analysisPayload.toString());
+            int analysisId = new JSONObject(get(mlHttpClient, statistics, "GET /api/projects/{id}/analyses/{name}",
+                    "/api/projects/" + projectId + "/analyses/" + analysisName)).getInt("id");
+
+            post(mlHttpClient, statistics, "POST /api/analyses/{id}/configurations", "/api/analyses/" + analysisId
+                    + "/configurations", modelConfiguration);
+            post(mlHttpClient, statistics, "POST /api/analyses/{id}/features/defaults", "/api/analyses/"
+                    + analysisId + "/features/defaults", customizedFeatures);
+            if (hyperParameters != null) {
+                post(mlHttpClient, statistics, "POST /api/analyses/{id}/hyperParams", "/api/analyses/" + analysisId
+                        + "/hyperParams?algorithmName=" + algorithmName, hyperParameters);
+            } else {
+                post(mlHttpClient, statistics, "POST /api/analyses/{id}/hyperParams/defaults", "/api/analyses/"
+                        + analysisId + "/hyperParams/defaults", null);
+            }
+
+            int versionSetId = new JSONArray(get(mlHttpClient, statistics, "GET /api/datasets/{id}/versions",
+                    "/api/datasets/" + datasetId + "/versions")).getJSONObject(0).getInt("id");
+            if (!mlHttpClient.checkDatasetStatus(versionSetId, buildTimeout, STATUS_POLL_FREQUENCY)) {
+                throw new MLHttpClientException("Dataset " + datasetName + " was not processed within "
+                        + buildTimeout + " ms");
+            }
+
+            JSONObject modelPayload = new JSONObject(model.toString()).put("analysisId", analysisId)
+                    .put("versionSetId", versionSetId);
+            String modelName = new JSONObject(post(mlHttpClient, statistics, "POST /api/models", "/api/models",
+                    modelPayload.toString())).getString("name");
+            long modelId = new JSONObject(get(mlHttpClient, statistics, "GET /api/models/{name}", "/api/models/"
+                    + modelName)).getLong("id");
+
+            long buildStart = System.currentTimeMillis();
+            post(mlHttpClient, statistics, "POST /api/models/{id}", "/api/models/" + modelId, null);
+            String status = mlHttpClient.waitForModelStatus(modelName, MLIntegrationTestConstants.MODEL_STATUS_COMPLETE,
+                    buildTimeout, STATUS_POLL_FREQUENCY);
+            long buildTime = System.currentTimeMillis() - buildStart;
+            if (!MLIntegrationTestConstants.MODEL_STATUS_COMPLETE.equals(status)) {
+                throw new MLHttpClientException("Model " + modelName + " ended with status " + status);
+            }
+
+            for (int i = 0; i < scoringRequests; i++) {
+                score(mlHttpClient, statistics, modelId, i);
+            }
+            statistics.flowCompleted(algorithmName, buildTime);
+        } catch (JSONException e) {
+            throw new MLHttpClientException("Unexpected response in the " + name + " flow", e);
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to check the status of dataset " + datasetName, e);
+        } finally {
+            if (cleanUp) {
+                if (projectId != -1) {
+                    delete(mlHttpClient, statistics, "DELETE /api/projects/{id}", "/api/projects/" + projectId);
+                }
+                if (datasetId != -1) {
+                    delete(mlHttpClient, statistics, "DELETE /api/datasets/{id}", "/api/datasets/" + datasetId);
+                }
+            }
+        }
+    }
+
+    private void score(MLHttpClient mlHttpClient, LoadStatistics statistics, long modelId, int request)
+            throws MLHttpClientException {
+        long start = System.nanoTime();
+        if (!recommendation) {
+            post(mlHttpClient, statistics, "POST /api/models/{id}/predict", "/api/models/" + modelId + "/predict"
+                    + predictionQuery, predictionPayload);
+        } else if (request % 2 == 0) {
+            // Same users and products as the recommendation samples
+            get(mlHttpClient, statistics, "GET /api/models/{id}/product-recommendations", "/api/models/" + modelId
+                    + "/product-recommendations?user-id=1&no-of-products=3");
+        } else {
+            get(mlHttpClient, statistics, "GET /api/models/{id}/user-recommendations", "/api/models/" + modelId
+                    + "/user-recommendations?product-id=123&no-of-users=2");
+        }
+        statistics.scored(algorithmName, start);
+    }
+
+    private static String get(MLHttpClient mlHttpClient, LoadStatistics statistics, String endpoint,
+            String resourcePath) throws MLHttpClientException {
+        long start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = mlHttpClient.doHttpGet(resourcePath);
+        } catch (MLHttpClientException e) {
+            statistics.failed(endpoint);
+            throw e;
+        }
+        return statistics.complete(endpoint, start, response);
+    }
+
+    private static String post(MLHttpClient mlHttpClient, LoadStatistics statistics, String endpoint,
+            String resourcePath, String payload) throws MLHttpClientException {
+        long start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = mlHttpClient.doHttpPost(resourcePath, payload);
+        } catch (MLHttpClientException e) {
+            statistics.failed(endpoint);
+            throw e;
+        }
+        return statistics.complete(endpoint, start, response);
+    }
+
+    private void upload(MLHttpClient mlHttpClient, LoadStatistics statistics, String datasetName)
+            throws MLHttpClientException {
+        long start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = mlHttpClient.uploadDatasetFromFile(datasetName, "1.0.0", dataset);
+        } catch (MLHttpClientException e) {
+            statistics.failed("POST /api/datasets");
+            throw e;
+        }
+        statistics.complete("POST /api/datasets", start, response);
+    }
+
+    /**
+     * Delete a resource, without masking an earlier failure of the flow. Failures are only counted.
+     */
+    private static void delete(MLHttpClient mlHttpClient, LoadStatistics statistics, String endpoint,
+            String resourcePath) {
+        long start = System.nanoTime();
+        try {
+            CloseableHttpResponse response = mlHttpClient.doHttpDelete(resourcePath);
+            try {
+                statistics.complete(endpoint, start, response);
+            } catch (MLHttpClientException ignored) {
+                // already counted as an error of the endpoint
+            }
+        } catch (MLHttpClientException e) {
+            statistics.failed(endpoint);
+        }
+    }
+
+    /**
+     * Read the percentile the model-generation.sh script of an anomaly detection sample predicts with.
+     */
+    private static String readPercentile(File directory) throws IOException {
+        String script = readIfExists(directory, "model-generation.sh");
+        if (script != null) {
+            Matcher matcher = PERCENTILE.matcher(script);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return DEFAULT_PERCENTILE;
+    }
+
+    private static String read(File directory, String fileName) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, fileName).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String readIfExists(File directory, String fileName) throws IOException {
+        return new File(directory, fileName).isFile() ? read(directory, fileName) : null;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.integration.common.utils;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.wso2.carbon.automation.engine.context.beans.Instance;
+import org.wso2.carbon.automation.engine.context.beans.User;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * A non-blocking http client to call ML services through the REST API. Requests are executed on an NIO reactor, so a
+ * small number of threads can keep a large number of requests open. The number of requests in flight is bounded;
+ * once the bound is reached, submitting a request blocks the caller until an earlier request completes.
+ */
+public class MLAsyncHttpClient {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 1000;
+
+    /**
+     * Receives the recommendations for each of the ids of a batch, as soon as they arrive. Called from the I/O
+     * threads, so implementations must be thread safe and should not block.
+     */
+    public interface RecommendationCallback {
+        void completed(int id, String recommendations);
+
+        void failed(int id, Exception e);
+    }
+
+    private String serverUrlHttps;
+    private String basicAuthKey;
+    private CloseableHttpAsyncClient httpClient;
+    private Semaphore inFlightRequests;
+
+    public MLAsyncHttpClient(Instance mlInstance, User userInfo) {
+        this(mlInstance, userInfo, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    /**
+     * @param mlInstance            ML server instance
+     * @param userInfo              User to authenticate as
+     * @param maxInFlightRequests   Maximum number of requests awaiting a response at any given time
+     */
+    public MLAsyncHttpClient(Instance mlInstance, User userInfo, int maxInFlightRequests) {
+        this(MLHttpClient.getServerUrlHttps(mlInstance), userInfo.getUserName(), userInfo.getPassword(),
+                maxInFlightRequests);
+    }
+
+    /**
+     * Create a client for a server outside the automation framework, e.g. from tools and benchmarks.
+     *
+     * @param serverUrlHttps        Secured URL of the ml Server, e.g. https://localhost:9443
+     * @param userName              Name of the user to authenticate as
+     * @param password              Password of the user
+     * @param maxInFlightRequests   Maximum number of requests awaiting a response at any given time
+     */
+    public MLAsyncHttpClient(String serverUrlHttps, String userName, String password, int maxInFlightRequests) {
+        this.serverUrlHttps = serverUrlHttps;
+        this.basicAuthKey = MLHttpClient.getBasicAuthKey(userName, password);
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.httpClient = HttpAsyncClients.custom().setMaxConnTotal(maxInFlightRequests)
+                .setMaxConnPerRoute(maxInFlightRequests).build();
+        this.httpClient.start();
+    }
+
+    /**
+     * Stop the I/O reactor and release all the connections. The client cannot be used afterwards.
+     *
+     * @throws MLHttpClientException
+     */
+    public void close() throws MLHttpClientException {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to close the async http client.", e);
+        }
+    }
+
+    /**
+     * Send a HTTP GET request to the given URI.
+     *
+     * @param resourcePath  Path of the api resource
+     * @param callback      Callback to be notified on completion, can be null
+     * @return              Future response from the endpoint
+     * @throws              MLHttpClientException
+     */
+    public Future<HttpResponse> doHttpGet(String resourcePath, FutureCallback<HttpResponse> callback)
+            throws MLHttpClientException {
+        HttpGet get = new HttpGet(serverUrlHttps + resourcePath);
+        return execute(get, callback);
+    }
+
+    /**
+     * Send a HTTP POST request to the given URI.
+     *
+     * @param resourcePath      Path of the api resource
+     * @param parametersJson    Payload JSON string
+     * @param callback          Callback to be notified on completion, can be null
+     * @return                  Future response from the endpoint
+     * @throws                  MLHttpClientException
+     */
+    public Future<HttpResponse> doHttpPost(String resourcePath, String parametersJson,
+            FutureCallback<HttpResponse> callback) throws MLHttpClientException {
+        HttpPost post = new HttpPost(serverUrlHttps + resourcePath);
+        if (parametersJson != null) {
+            try {
+                post.setEntity(new StringEntity(parametersJson));
+            } catch (UnsupportedEncodingException e) {
+                throw new MLHttpClientException("Failed to post to " + resourcePath, e);
+            }
+        }
+        return execute(post, callback);
+    }
+
+    /**
+     * Create a Model
+     *
+     * @param analysisId    ID of the  analysis associated with the model
+     * @param versionSetId  ID of the version set to be used for the model
+     * @param callback      Callback to be notified on completion, can be null
+     * @return              Future response from the back-end
+     * @throws              MLHttpClientException
+     */
+    public Future<HttpResponse> createModel(int analysisId, int versionSetId, FutureCallback<HttpResponse> callback)
+            throws MLHttpClientException {
+        String payload = "{\"analysisId\" :" + analysisId + ",\"versionSetId\" :" + versionSetId + "}";
+        return doHttpPost("/api/models/", payload, callback);
+    }
+
+    /**
+     * Predict using a built model
+     *
+     * @param modelId   ID of the model
+     * @param payload   JSON array of feature value arrays
+     * @param callback  Callback to be notified on completion, can be null
+     * @return          Future response from the back-end
+     * @throws          MLHttpClientException
+     */
+    public Future<HttpResponse> predict(long modelId, String payload, FutureCallback<HttpResponse> callback)
+            throws MLHttpClientException {
+        return doHttpPost("/api/models/" + modelId + "/predict", payload, callback);
+    }
+
+    /**
+     * Get product recommendations for a user from a collaborative filtering model
+     *
+     * @param modelId           ID of the model
+     * @param userId            ID of the user
+     * @param noOfProducts      Number of products to recommend
+     * @param callback          Callback to be notified on completion, can be null
+     * @return                  Future response from the back-end
+     * @throws                  MLHttpClientException
+     */
+    public Future<HttpResponse> getProductRecommendations(long modelId, int userId, int noOfProducts,
+            FutureCallback<HttpResponse> callback) throws MLHttpClientException {
+        return doHttpGet("/api/models/" + modelId + "/product-recommendations?user-id=" + userId + "&no-of-products="
+                + noOfProducts, callback);
+    }
+
+    /**
+     * Get user recommendations for a product from a collaborative filtering model
+     *
+     * @param modelId       ID of the model
+     * @param productId     ID of the product
+     * @param noOfUsers     Number of users to recommend
+     * @param callback      Callback to be notified on completion, can be null
+     * @return              Future response from the back-end
+     * @throws              MLHttpClientException
+     */
+    public Future<HttpResponse> getUserRecommendations(long modelId, int productId, int noOfUsers,
+            FutureCallback<HttpResponse> callback) throws MLHttpClientException {
+        return doHttpGet("/api/models/" + modelId + "/user-recommendations?product-id=" + productId + "&no-of-users="
+                + noOfUsers, callback);
+    }
+
+    /**
+     * Get product recommendations for each of the given users. The requests are sent concurrently, up to the in-flight
+     * limit, and the recommendations are passed to the callback as they arrive. Returns once all the requests have
+     * completed.
+     *
+     * @param modelId       ID of the model
+     * @param userIds       IDs of the users
+     * @param noOfProducts  Number of products to recommend to each user
+     * @param callback      Callback to receive the recommendations of each user
+     * @return              Number of users for whom the recommendations could not be retrieved
+     * @throws              MLHttpClientException
+     */
+    public int getProductRecommendations(long modelId, int[] userIds, int noOfProducts,
+            RecommendationCallback callback) throws MLHttpClientException {
+        String[] resourcePaths = new String[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            resourcePaths[i] = "/api/models/" + modelId + "/product-recommendations?user-id=" + userIds[i]
+                    + "&no-of-products=" + noOfProducts;
+        }
+        return getRecommendations(userIds, resourcePaths, callback);
+    }
+
+    /**
+     * Get user recommendations for each of the given products. The requests are sent concurrently, up to the in-flight
+     * limit, and the recommendations are passed to the callback as they arrive. Returns once all the requests have
+     * completed.
+     *
+     * @param modelId       ID of the model
+     * @param productIds    IDs of the products
+     * @param noOfUsers     Number of users to recommend for each product
+     * @param callback      Callback to receive the recommendations of each product
+     * @return              Number of products for which the recommendations could not be retrieved
+     * @throws              MLHttpClientException
+     */
+    public int getUserRecommendations(long modelId, int[] productIds, int noOfUsers, RecommendationCallback callback)
+            throws MLHttpClientException {
+        String[] resourcePaths = new String[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            resourcePaths[i] = "/api/models/" + modelId + "/user-recommendations?product-id=" + productIds[i]
+                    + "&no-of-users=" + noOfUsers;
+        }
+        return getRecommendations(productIds, resourcePaths, callback);
+    }
+
+    /**
+     * Number of requests that can be submitted before the caller gets blocked.
+     */
+    public int getAvailableRequestSlots() {
+        return inFlightRequests.availablePermits();
+    }
+
+    /**
+     * Wait for an in-flight slot and dispatch the request. The slot is released when the request completes, fails or
+     * gets cancelled.
+     */
+    private Future<HttpResponse> execute(HttpUriRequest request, final FutureCallback<HttpResponse> callback)
+            throws MLHttpClientException {
+        request.setHeader(MLIntegrationTestConstants.CONTENT_TYPE,
+                MLIntegrationTestConstants.CONTENT_TYPE_APPLICATION_JSON);
+        request.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, basicAuthKey);
+        try {
+            inFlightRequests.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MLHttpClientException("Interrupted while waiting to send " + request.getURI(), e);
+        }
+        try {
+            return httpClient.execute(request, new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(HttpResponse response) {
+                    inFlightRequests.release();
+                    if (callback != null) {
+                        callback.completed(response);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    inFlightRequests.release();
+                    if (callback != null) {
+                        callback.failed(e);
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlightRequests.release();
+                    if (callback != null) {
+                        callback.cancelled();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightRequests.release();
+            throw new MLHttpClientException("Failed to send " + request.getURI(), e);
+        }
+    }
+
+    private int getRecommendations(int[] ids, String[] resourcePaths, final RecommendationCallback callback)
+            throws MLHttpClientException {
+        final CountDownLatch pending = new CountDownLatch(ids.length);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < ids.length; i++) {
+            final int id = ids[i];
+            doHttpGet(resourcePaths[i], new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(HttpResponse response) {
+                    try {
+                        int statusCode = response.getStatusLine().getStatusCode();
+                        String body = EntityUtils.toString(response.getEntity());
+                        if (statusCode == HttpStatus.SC_OK) {
+                            callback.completed(id, body);
+                        } else {
+                            fail(new MLHttpClientException("Unexpected response " + statusCode + ": " + body));
+                        }
+                    } catch (IOException e) {
+                        fail(e);
+                    } finally {
+                        pending.countDown();
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    fail(e);
+                    pending.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    fail(new MLHttpClientException("Request for the recommendations of " + id + " was cancelled."));
+                    pending.countDown();
+                }
+
+                private void fail(Exception e) {
+                    failures.incrementAndGet();
+                    callback.failed(id, e);
+                }
+            });
+        }
+        try {
+            pending.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MLHttpClientException("Interrupted while waiting for recommendations.", e);
+        }
+        return failures.get();
+    }
+}
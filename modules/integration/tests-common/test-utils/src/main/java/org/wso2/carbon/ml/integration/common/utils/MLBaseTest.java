@@ -337,23 +337,23 @@ public abstract class MLBaseTest {
         Assert.assertNotNull(datasetIds, "Test case is not properly initialized. Call super.init()");
         
         for (Integer id : modelIds) {
-            mlHttpclient.doHttpDelete("/api/models/"+id);
+            delete("/api/models/"+id);
         }
         
         for (Integer id : analysisIds) {
-            mlHttpclient.doHttpDelete("/api/analyses/"+id);
+            delete("/api/analyses/"+id);
         }
         
         for (Integer id : projectIds) {
-            mlHttpclient.doHttpDelete("/api/projects/"+id);
+            delete("/api/projects/"+id);
         }
         
         for (Integer id : datasetVersionIds) {
-            mlHttpclient.doHttpDelete("/api/datasets/versions/"+id);
+            delete("/api/datasets/versions/"+id);
         }
         
         for (Integer id : datasetIds) {
-            mlHttpclient.doHttpDelete("/api/datasets/"+id);
+            delete("/api/datasets/"+id);
         }
         
         modelIds = null;
@@ -361,6 +361,19 @@ public abstract class MLBaseTest {
         projectIds = null;
         datasetVersionIds = null;
         datasetIds = null;
+        mlHttpclient.close();
+    }
+    
+    /**
+     * Deletes a resource and releases the connection back to the pool.
+     */
+    private void delete(String resourcePath) throws MLHttpClientException {
+        CloseableHttpResponse response = mlHttpclient.doHttpDelete(resourcePath);
+        try {
+            response.close();
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to close the response of deleting " + resourcePath, e);
+        }
     }
 
     /**
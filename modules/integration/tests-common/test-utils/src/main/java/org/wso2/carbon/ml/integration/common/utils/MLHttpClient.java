@@ -25,10 +25,12 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -39,6 +41,8 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -51,16 +55,87 @@ import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientExcepti
 import org.wso2.carbon.ml.integration.common.utils.exception.MLIntegrationBaseTestException;
 
 /**
- * This is a http client to call ML services through the REST API.
+ * This is a http client to call ML services through the REST API. All the requests share a single pool of keep-alive
+ * connections, hence responses must be closed once consumed and the client itself must be closed when it is no longer
+ * needed.
  */
 public class MLHttpClient {
     
-    private User userInfo;
+    public static final int DEFAULT_MAX_CONNECTIONS = 200;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 100;
+    // Time (in milliseconds) a pooled connection may stay idle before it is evicted
+    private static final long IDLE_CONNECTION_TIMEOUT = 30000;
+    private static final long IDLE_CONNECTION_EVICTION_INTERVAL = 5000;
+    // Time (in milliseconds) to wait for a connection from the pool, so that leaked responses fail requests
+    // instead of blocking them forever
+    private static final int CONNECTION_REQUEST_TIMEOUT = 60000;
+    private static final int CONNECT_TIMEOUT = 30000;
+    // Maximum inactivity (in milliseconds) while waiting for response data
+    private static final int SOCKET_TIMEOUT = 300000;
+
     private Instance mlInstance;
+    private String serverUrlHttps;
+    private String basicAuthKey;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private IdleConnectionEvictor idleConnectionEvictor;
+    private final MLNumericArrayParser numericArrayParser = new MLNumericArrayParser();
     
     public MLHttpClient(Instance mlInstance, User userInfo) {
+        this(mlInstance, userInfo, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    }
+
+    /**
+     * @param mlInstance                ML server instance
+     * @param userInfo                  User to authenticate as
+     * @param maxConnections            Maximum number of pooled connections
+     * @param maxConnectionsPerRoute    Maximum number of pooled connections to a single host
+     */
+    public MLHttpClient(Instance mlInstance, User userInfo, int maxConnections, int maxConnectionsPerRoute) {
+        this(getServerUrlHttps(mlInstance), userInfo.getUserName(), userInfo.getPassword(), maxConnections,
+                maxConnectionsPerRoute);
         this.mlInstance = mlInstance;
-        this.userInfo = userInfo;
+    }
+
+    /**
+     * Create a client for a server outside the automation framework, e.g. from tools and benchmarks. Such a client
+     * only talks to the secured URL.
+     *
+     * @param serverUrlHttps            Secured URL of the ml Server, e.g. https://localhost:9443
+     * @param userName                  Name of the user to authenticate as
+     * @param password                  Password of the user
+     * @param maxConnections            Maximum number of pooled connections
+     * @param maxConnectionsPerRoute    Maximum number of pooled connections to a single host
+     */
+    public MLHttpClient(String serverUrlHttps, String userName, String password, int maxConnections,
+            int maxConnectionsPerRoute) {
+        this.serverUrlHttps = serverUrlHttps;
+        this.basicAuthKey = getBasicAuthKey(userName, password);
+        // The default registry creates a single SSL context for the pool, so TLS sessions are resumed
+        // across connections instead of doing a full handshake for each of them.
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        RequestConfig requestConfig = RequestConfig.custom().setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+                .setConnectTimeout(CONNECT_TIMEOUT).setSocketTimeout(SOCKET_TIMEOUT).build();
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig).build();
+        this.idleConnectionEvictor = new IdleConnectionEvictor(connectionManager);
+        this.idleConnectionEvictor.start();
+    }
+    
+    /**
+     * Release all the pooled connections and stop the idle connection eviction. The client cannot be used afterwards.
+     * 
+     * @throws MLHttpClientException
+     */
+    public void close() throws MLHttpClientException {
+        idleConnectionEvictor.shutdown();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to close the http client.", e);
+        }
     }
     
     
@@ -71,6 +146,16 @@ public class MLHttpClient {
      * @throws  MLIntegrationBaseTestException
      */
     protected String getServerUrlHttps() {
+        return serverUrlHttps;
+    }
+
+    /**
+     * Get the secured URL of the given ml Server instance.
+     *
+     * @param mlInstance    ML server instance
+     * @return              Secured URL of the service.
+     */
+    static String getServerUrlHttps(Instance mlInstance) {
         String protocol = ContextXpathConstants.PRODUCT_GROUP_PORT_HTTPS;
         String host = UrlGenerationUtil.getWorkerHost(mlInstance);
         //Get port
@@ -88,9 +173,13 @@ public class MLHttpClient {
      * Get the Server URL.
      * 
      * @return  Non-secured URL of the service.
-     * @throws  MLIntegrationBaseTestException
+     * @throws  IllegalStateException if the client was created from a server URL instead of a server instance
      */
     protected String getServerUrlHttp() {
+        if (mlInstance == null) {
+            throw new IllegalStateException("Non-secured URL is not known for a client created from the secured URL "
+                    + serverUrlHttps);
+        }
         String protocol = ContextXpathConstants.PRODUCT_GROUP_PORT_HTTP;
         String host = UrlGenerationUtil.getWorkerHost(mlInstance);
         //Get port
@@ -112,7 +201,6 @@ public class MLHttpClient {
      * @throws      MLHttpClientException 
      */
     public CloseableHttpResponse doHttpGet(String resourcePath) throws MLHttpClientException {
-        CloseableHttpClient httpClient =  HttpClients.createDefault();
         HttpGet get = null;
         try {
             get = new HttpGet(getServerUrlHttps() + resourcePath);
@@ -136,7 +224,6 @@ public class MLHttpClient {
      */
     public CloseableHttpResponse doHttpPost(String resourcePath, String parametersJson) throws MLHttpClientException {
     	try {
-    	    CloseableHttpClient httpClient =  HttpClients.createDefault();
             HttpPost post = new HttpPost(getServerUrlHttps() + resourcePath);
             post.setHeader(MLIntegrationTestConstants.CONTENT_TYPE, MLIntegrationTestConstants.CONTENT_TYPE_APPLICATION_JSON);
             post.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, getBasicAuthKey());
@@ -169,7 +256,6 @@ public class MLHttpClient {
      * @throws      MLHttpClientException 
      */
     public CloseableHttpResponse doHttpDelete(String resourcePath) throws MLHttpClientException {
-        CloseableHttpClient httpClient =  HttpClients.createDefault();
         HttpDelete delete;
         try {
             delete = new HttpDelete(getServerUrlHttps() + resourcePath);
@@ -189,7 +275,18 @@ public class MLHttpClient {
      * @return  Encoded Key Basic auth Key
      */
     public String getBasicAuthKey() {
-        String token = this.userInfo.getUserName() + ":" + userInfo.getPassword();
+        return basicAuthKey;
+    }
+
+    /**
+     * Get the Encoded Key for Basic auth header of the given user
+     *
+     * @param userName  Name of the user
+     * @param password  Password of the user
+     * @return          Encoded Key Basic auth Key
+     */
+    static String getBasicAuthKey(String userName, String password) {
+        String token = userName + ":" + password;
         byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
         String encodedToken = new String(Base64.encodeBase64(tokenBytes), StandardCharsets.UTF_8);
         return (MLIntegrationTestConstants.BASIC + encodedToken);
@@ -206,34 +303,56 @@ public class MLHttpClient {
      */
     public CloseableHttpResponse uploadDatasetFromCSV(String datasetName, String version, String resourcePath)
             throws MLHttpClientException {
-        CloseableHttpClient httpClient =  HttpClients.createDefault();
         try {
-            HttpPost httpPost = new HttpPost(getServerUrlHttps() + "/api/datasets/");
-            httpPost.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, getBasicAuthKey());
-
-            MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
-            multipartEntityBuilder.addPart("description", new StringBody("Sample dataset for Testing", ContentType.TEXT_PLAIN));
-            multipartEntityBuilder.addPart("sourceType", new StringBody("file", ContentType.TEXT_PLAIN));
-            multipartEntityBuilder.addPart("destination", new StringBody("file", ContentType.TEXT_PLAIN));
-            multipartEntityBuilder.addPart("dataFormat", new StringBody("CSV", ContentType.TEXT_PLAIN));
-            multipartEntityBuilder.addPart("containsHeader", new StringBody("true", ContentType.TEXT_PLAIN));
-
-            if (datasetName != null) {
-                multipartEntityBuilder.addPart("datasetName", new StringBody(datasetName, ContentType.TEXT_PLAIN));
-            }
-            if (version != null) {
-                multipartEntityBuilder.addPart("version", new StringBody(version, ContentType.TEXT_PLAIN));
-            }
-            if (resourcePath != null) {
-                File file = new File(getResourceAbsolutePath(resourcePath));
-                multipartEntityBuilder.addBinaryBody("file", file, ContentType.APPLICATION_OCTET_STREAM, "IndiansDiabetes.csv");
-            }
-            httpPost.setEntity(multipartEntityBuilder.build());
-            return httpClient.execute(httpPost);
+            File file = resourcePath != null ? new File(getResourceAbsolutePath(resourcePath)) : null;
+            return uploadDataset(datasetName, version, file, "IndiansDiabetes.csv");
         } catch (Exception e) {
             throw new MLHttpClientException("Failed to upload dataset from csv " + resourcePath, e);
         }
     }
+
+    /**
+     * Upload a CSV dataset from the file system
+     *
+     * @param datasetName   Name for the dataset
+     * @param version       Version for the dataset
+     * @param file          CSV file with a header row
+     * @return              Response from the backend
+     * @throws              MLHttpClientException
+     */
+    public CloseableHttpResponse uploadDatasetFromFile(String datasetName, String version, File file)
+            throws MLHttpClientException {
+        try {
+            return uploadDataset(datasetName, version, file, file.getName());
+        } catch (Exception e) {
+            throw new MLHttpClientException("Failed to upload dataset from csv " + file, e);
+        }
+    }
+
+    private CloseableHttpResponse uploadDataset(String datasetName, String version, File file, String fileName)
+            throws IOException {
+        HttpPost httpPost = new HttpPost(getServerUrlHttps() + "/api/datasets/");
+        httpPost.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, getBasicAuthKey());
+
+        MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
+        multipartEntityBuilder.addPart("description", new StringBody("Sample dataset for Testing", ContentType.TEXT_PLAIN));
+        multipartEntityBuilder.addPart("sourceType", new StringBody("file", ContentType.TEXT_PLAIN));
+        multipartEntityBuilder.addPart("destination", new StringBody("file", ContentType.TEXT_PLAIN));
+        multipartEntityBuilder.addPart("dataFormat", new StringBody("CSV", ContentType.TEXT_PLAIN));
+        multipartEntityBuilder.addPart("containsHeader", new StringBody("true", ContentType.TEXT_PLAIN));
+
+        if (datasetName != null) {
+            multipartEntityBuilder.addPart("datasetName", new StringBody(datasetName, ContentType.TEXT_PLAIN));
+        }
+        if (version != null) {
+            multipartEntityBuilder.addPart("version", new StringBody(version, ContentType.TEXT_PLAIN));
+        }
+        if (file != null) {
+            multipartEntityBuilder.addBinaryBody("file", file, ContentType.APPLICATION_OCTET_STREAM, fileName);
+        }
+        httpPost.setEntity(multipartEntityBuilder.build());
+        return httpClient.execute(httpPost);
+    }
     
     /**
      * Upload a sample datatset from resources
@@ -246,7 +365,6 @@ public class MLHttpClient {
      */
     public CloseableHttpResponse uploadDatasetFromDAS(String datasetName, String version, String tableName)
             throws MLHttpClientException {
-        CloseableHttpClient httpClient =  HttpClients.createDefault();
         try {
             HttpPost httpPost = new HttpPost(getServerUrlHttps() + "/api/datasets/");
             httpPost.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, getBasicAuthKey());
@@ -276,7 +394,6 @@ public class MLHttpClient {
      * @throws MLHttpClientException
      */
     public CloseableHttpResponse predictFromCSV(long modelId, String resourcePath) throws MLHttpClientException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         try {
             HttpPost httpPost = new HttpPost(getServerUrlHttps() + "/api/models/predict");
             httpPost.setHeader(MLIntegrationTestConstants.AUTHORIZATION_HEADER, getBasicAuthKey());
@@ -297,6 +414,30 @@ public class MLHttpClient {
         }
     }
     
+    /**
+     * Predict from a CSV file in resources and read the predictions one at a time as they arrive, instead of
+     * buffering the whole response.
+     *
+     * @param modelId       ID of the model
+     * @param resourcePath  Relative path the CSV file in resources
+     * @return              Reader over the predictions
+     * @throws              MLHttpClientException if the prediction request is not successful
+     */
+    public MLPredictionReader readPredictionsFromCSV(long modelId, String resourcePath) throws MLHttpClientException {
+        CloseableHttpResponse response = predictFromCSV(modelId, resourcePath);
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK) {
+            try {
+                response.close();
+            } catch (IOException ignored) {
+                // the connection is discarded by the pool
+            }
+            throw new MLHttpClientException("Failed to predict from " + resourcePath + " using model " + modelId
+                    + ", status: " + statusCode);
+        }
+        return new MLPredictionReader(response);
+    }
+    
     /**
      * Create a project
      * 
@@ -362,33 +503,111 @@ public class MLHttpClient {
     }
     
     /**
-     * Check the status of a dataset.
+     * Check the status of a dataset. The status is polled with an increasing interval, starting small and capped at
+     * the given frequency, so that a dataset which gets processed quickly is noticed without waiting a full interval.
+     * Once the sample is available, one more interval of the given frequency is waited for the processing to settle.
      * @param versionSetId
      * @param timeout
-     * @param frequency
+     * @param frequency maximum time interval between two polls
      * @return true if the status is completed and false if it is not.
      * @throws MLHttpClientException
      * @throws JSONException
      * @throws IOException
      */
     public boolean checkDatasetStatus(int versionSetId, long timeout, int frequency) throws MLHttpClientException, IOException {
-        boolean status = false;
-        int totalTime = 0;
-        while (!status && timeout >= totalTime) {
+        long deadline = System.currentTimeMillis() + timeout;
+        long interval = Math.min(MLIntegrationTestConstants.INITIAL_STATUS_POLL_INTERVAL, frequency);
+        while (true) {
             CloseableHttpResponse response = doHttpGet("/api/datasets/versions/" + versionSetId + "/sample");
             int statusCode = response.getStatusLine().getStatusCode();
             response.close();
 
             // Checks whether status is not 404
-            status = statusCode != HttpStatus.SC_NOT_FOUND;
+            if (statusCode != HttpStatus.SC_NOT_FOUND) {
+                // The sample is stored before the rest of the version set is processed, so wait once more as
+                // callers rely on the dataset being fully processed
+                sleepUntilNextPoll(System.currentTimeMillis() + frequency, frequency);
+                return true;
+            }
+            if (!sleepUntilNextPoll(deadline, interval)) {
+                return false;
+            }
+            interval = Math.min(interval * 2, frequency);
+        }
+    }
+
+    /**
+     * Wait until a model reaches the expected status. Polling stops early when the model reaches a terminal status
+     * ("Complete" or "Failed") other than the expected one, as it will not change any further. The status is polled
+     * with an increasing interval, starting small and capped at the given frequency. Unsuccessful or unreadable
+     * responses, e.g. while the model is still being created, are polled again until the timeout.
+     *
+     * @param modelName         Name of the model
+     * @param expectedStatus    Status to wait for
+     * @param timeout           Maximum time to wait
+     * @param frequency         Maximum time interval between two polls
+     * @return                  Last observed status of the model, null if none could be read
+     * @throws                  MLHttpClientException
+     */
+    public String waitForModelStatus(String modelName, String expectedStatus, long timeout, int frequency)
+            throws MLHttpClientException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long interval = Math.min(MLIntegrationTestConstants.INITIAL_STATUS_POLL_INTERVAL, frequency);
+        while (true) {
+            String status = getModelStatus(modelName);
+            if (expectedStatus.equals(status) || MLIntegrationTestConstants.MODEL_STATUS_COMPLETE.equals(status)
+                    || MLIntegrationTestConstants.MODEL_STATUS_FAILED.equals(status)) {
+                return status;
+            }
+            if (!sleepUntilNextPoll(deadline, interval)) {
+                return status;
+            }
+            interval = Math.min(interval * 2, frequency);
+        }
+    }
+
+    /**
+     * Get the current status of a model.
+     *
+     * @return null if the status could not be read from the response
+     */
+    private String getModelStatus(String modelName) throws MLHttpClientException {
+        CloseableHttpResponse response = doHttpGet("/api/models/" + modelName);
+        try {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || response.getEntity() == null) {
+                return null;
+            }
+            return new JSONObject(EntityUtils.toString(response.getEntity())).optString("status", null);
+        } catch (IOException e) {
+            return null;
+        } catch (JSONException e) {
+            return null;
+        } finally {
             try {
-                Thread.sleep(frequency);
-            } catch (InterruptedException ignore) {
+                response.close();
+            } catch (IOException ignored) {
+                // the connection is discarded by the pool
             }
+        }
+    }
 
-            totalTime += frequency;
+    /**
+     * Sleep for the given interval unless it passes the deadline.
+     *
+     * @return false if the deadline has already passed, true otherwise
+     */
+    private static boolean sleepUntilNextPoll(long deadline, long interval) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
         }
-        return status;
+        try {
+            Thread.sleep(Math.min(interval, remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
     }
     
     /**
@@ -585,6 +804,38 @@ public class MLHttpClient {
         }
     }
     
+    /**
+     * Parse a numeric JSON array response, such as the predictions returned with skipDecoding=true, into a buffer
+     * without boxing the values.
+     *
+     * @param response  {@link CloseableHttpResponse}
+     * @param buffer    Buffer to hold the values, must be large enough for all of them
+     * @return          Number of values in the response
+     * @throws          MLHttpClientException
+     */
+    public int getResponseAsDoubles(CloseableHttpResponse response, double[] buffer) throws MLHttpClientException {
+        String body;
+        try {
+            if (response.getEntity() == null) {
+                throw new MLHttpClientException("Response has no content, status: "
+                        + response.getStatusLine().getStatusCode());
+            }
+            body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to extract the response body.", e);
+        } finally {
+            try {
+                response.close();
+            } catch (IOException ignored) {
+                // the connection is discarded by the pool
+            }
+        }
+        // The parser keeps its position between calls, so it is used by one thread at a time
+        synchronized (numericArrayParser) {
+            return numericArrayParser.parseArray(body, buffer);
+        }
+    }
+    
     /**
      * Get the model ID using the name of the model
      * 
@@ -668,4 +919,41 @@ public class MLHttpClient {
             throw new MLHttpClientException("Failed to download model as PMML for model [id] " + modelId, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Periodically closes expired connections and connections that have been idle for too long, so that the pool does
+     * not hand out connections already dropped by the server.
+     */
+    private static class IdleConnectionEvictor extends Thread {
+
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private volatile boolean shutdown;
+
+        IdleConnectionEvictor(PoolingHttpClientConnectionManager connectionManager) {
+            super("ml-http-client-idle-connection-evictor");
+            this.connectionManager = connectionManager;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    synchronized (this) {
+                        wait(IDLE_CONNECTION_EVICTION_INTERVAL);
+                    }
+                    connectionManager.closeExpiredConnections();
+                    connectionManager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ignore) {
+            }
+        }
+
+        void shutdown() {
+            shutdown = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
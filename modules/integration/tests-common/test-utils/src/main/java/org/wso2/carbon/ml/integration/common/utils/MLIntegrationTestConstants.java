@@ -39,6 +39,7 @@ public class MLIntegrationTestConstants {
 	public static final String BASIC = "Basic ";
 	public static final String CONTENT_TYPE = "Content-Type";
 	public static final String CONTENT_TYPE_APPLICATION_JSON = "application/json";
+	public static final String CONTENT_TYPE_APPLICATION_NDJSON = "application/x-ndjson";
 
 	// Constants related to configuring models
 	public static final String TRAIN_DATA_FRACTION_CONFIG = "trainDataFraction";
@@ -57,6 +58,12 @@ public class MLIntegrationTestConstants {
 
 	// The time constant
     public static final long THREAD_SLEEP_TIME_LARGE = 120000;
+    // First interval (in milliseconds) between two status polls, doubled on each subsequent poll
+    public static final long INITIAL_STATUS_POLL_INTERVAL = 100;
+
+    // Model statuses
+    public static final String MODEL_STATUS_COMPLETE = "Complete";
+    public static final String MODEL_STATUS_FAILED = "Failed";
 
 	// Constants for Test cases
 	public static final String CLASSIFICATION = "Classification";
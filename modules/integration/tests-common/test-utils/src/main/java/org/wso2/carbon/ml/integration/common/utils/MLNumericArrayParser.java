@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.integration.common.utils;
+
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Parses all-numeric JSON arrays, such as prediction payloads ([[6,148,72,35,0,33.6,0.627,50],...]) and the
+ * predictions returned with skipDecoding=true ([0.0,1.0,...]), straight into primitive double buffers supplied by the
+ * caller. Numbers with at most 18 significant digits and a small exponent are converted without allocating;
+ * anything else falls back to {@link Double#parseDouble(String)}.
+ */
+public class MLNumericArrayParser {
+
+    // Powers of ten which are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+    // Largest mantissa which is exactly representable as a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Receives the rows of a two dimensional array. The same buffer is passed for every row, so it must not be kept
+     * after the call returns.
+     */
+    public interface RowHandler {
+        void handleRow(int rowIndex, double[] values, int length) throws MLHttpClientException;
+    }
+
+    private CharSequence json;
+    private int position;
+
+    /**
+     * Parse a flat array of numbers.
+     *
+     * @param json      JSON array of numbers
+     * @param buffer    Buffer to hold the values, must be large enough for all of them
+     * @return          Number of values parsed
+     * @throws          MLHttpClientException
+     */
+    public int parseArray(CharSequence json, double[] buffer) throws MLHttpClientException {
+        reset(json);
+        int length = parseRow(buffer);
+        expectEnd();
+        return length;
+    }
+
+    /**
+     * Parse an array of arrays of numbers, one row at a time, into a reusable row buffer.
+     *
+     * @param json          JSON array of arrays of numbers
+     * @param rowBuffer     Buffer to hold the values of a row, must be large enough for the longest row
+     * @param handler       Handler to receive each row
+     * @return              Number of rows parsed
+     * @throws              MLHttpClientException
+     */
+    public int parseRows(CharSequence json, double[] rowBuffer, RowHandler handler) throws MLHttpClientException {
+        reset(json);
+        expect('[');
+        int rows = 0;
+        if (peek() == ']') {
+            position++;
+        } else {
+            while (true) {
+                int length = parseRow(rowBuffer);
+                handler.handleRow(rows++, rowBuffer, length);
+                char c = next();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+        expectEnd();
+        return rows;
+    }
+
+    private void reset(CharSequence json) {
+        this.json = json;
+        this.position = 0;
+    }
+
+    private int parseRow(double[] buffer) throws MLHttpClientException {
+        expect('[');
+        int length = 0;
+        if (peek() == ']') {
+            position++;
+            return 0;
+        }
+        while (true) {
+            if (length == buffer.length) {
+                throw error("Row has more than " + buffer.length + " values");
+            }
+            buffer[length++] = parseNumber();
+            char c = next();
+            if (c == ']') {
+                return length;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private double parseNumber() throws MLHttpClientException {
+        skipWhitespace();
+        int start = position;
+        boolean negative = false;
+        if (position < json.length() && json.charAt(position) == '-') {
+            negative = true;
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // leading zeros are not significant
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else if (digits < MAX_SIGNIFICANT_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else {
+                    // too many significant digits to convert exactly
+                    digits++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (!seenDigit) {
+            throw error("Expected a number");
+        }
+        if (position < json.length() && (json.charAt(position) == 'e' || json.charAt(position) == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < json.length() && (json.charAt(position) == '-' || json.charAt(position) == '+')) {
+                negativeExponent = json.charAt(position) == '-';
+                position++;
+            }
+            int explicitExponent = 0;
+            boolean seenExponentDigit = false;
+            while (position < json.length() && json.charAt(position) >= '0' && json.charAt(position) <= '9') {
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (json.charAt(position) - '0');
+                }
+                seenExponentDigit = true;
+                position++;
+            }
+            if (!seenExponentDigit) {
+                throw error("Expected an exponent");
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (digits <= MAX_SIGNIFICANT_DIGITS && mantissa < MAX_EXACT_MANTISSA
+                && exponent >= -(POWERS_OF_TEN.length - 1) && exponent <= POWERS_OF_TEN.length - 1) {
+            // Both the mantissa and the power of ten are exact, so a single operation gives a correctly rounded value
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(json.subSequence(start, position).toString());
+        } catch (NumberFormatException e) {
+            throw new MLHttpClientException("Invalid number at position " + start, e);
+        }
+    }
+
+    private void expect(char expected) throws MLHttpClientException {
+        if (next() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private void expectEnd() throws MLHttpClientException {
+        skipWhitespace();
+        if (position != json.length()) {
+            throw error("Unexpected content after the array");
+        }
+    }
+
+    private char next() throws MLHttpClientException {
+        skipWhitespace();
+        if (position >= json.length()) {
+            throw error("Unexpected end of input");
+        }
+        return json.charAt(position++);
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return position < json.length() ? json.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+    }
+
+    private MLHttpClientException error(String message) {
+        return new MLHttpClientException(message + " at position " + position);
+    }
+}
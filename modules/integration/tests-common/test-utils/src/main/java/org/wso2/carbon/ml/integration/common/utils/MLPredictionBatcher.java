@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.integration.common.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.json.JSONArray;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Coalesces concurrent single-row predictions for a model into batched calls to /api/models/{id}/predict. A batch is
+ * sent once it holds the maximum number of rows or once the batch window has elapsed since its first row arrived,
+ * whichever happens first, and the predictions are handed back to the individual callers.
+ * <p>
+ * Batch sizes and the time rows wait in the queue are recorded in histograms, to tune the window for throughput
+ * against latency.
+ */
+public class MLPredictionBatcher {
+
+    // Queue wait histogram bucket i counts waits shorter than 2^i microseconds (and not counted in bucket i - 1)
+    private static final int QUEUE_WAIT_BUCKETS = 32;
+
+    private MLHttpClient mlHttpClient;
+    private String resourcePath;
+    private int maxBatchSize;
+    private long batchWindowNanos;
+    private BlockingQueue<PendingPrediction> queue;
+    private ExecutorService dispatchers;
+    private AtomicLongArray batchSizeHistogram;
+    private AtomicLongArray queueWaitHistogram;
+    // Guards enqueueing against closing, so that no row is queued after the queue has been drained
+    private final Object lock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * @param mlHttpClient          Client used to send the batches
+     * @param modelId               ID of the model to predict with
+     * @param skipDecoding          Whether to skip decoding the predicted values
+     * @param maxBatchSize          Maximum number of rows in a batch
+     * @param batchWindowMillis     Maximum time the first row of a batch waits for more rows
+     * @param concurrentBatches     Maximum number of batches in flight
+     * @throws                      IllegalArgumentException if the batch size, window or concurrency is not positive
+     */
+    public MLPredictionBatcher(MLHttpClient mlHttpClient, long modelId, boolean skipDecoding, int maxBatchSize,
+            long batchWindowMillis, int concurrentBatches) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Maximum batch size must be positive: " + maxBatchSize);
+        }
+        if (batchWindowMillis <= 0) {
+            throw new IllegalArgumentException("Batch window must be positive: " + batchWindowMillis);
+        }
+        if (concurrentBatches <= 0) {
+            throw new IllegalArgumentException("Number of concurrent batches must be positive: "
+                    + concurrentBatches);
+        }
+        this.mlHttpClient = mlHttpClient;
+        this.resourcePath = "/api/models/" + modelId + "/predict" + (skipDecoding ? "?skipDecoding=true" : "");
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        this.queue = new LinkedBlockingQueue<PendingPrediction>();
+        this.batchSizeHistogram = new AtomicLongArray(maxBatchSize + 1);
+        this.queueWaitHistogram = new AtomicLongArray(QUEUE_WAIT_BUCKETS);
+        this.dispatchers = Executors.newFixedThreadPool(concurrentBatches);
+        for (int i = 0; i < concurrentBatches; i++) {
+            dispatchers.execute(new Dispatcher());
+        }
+    }
+
+    /**
+     * Queue a single row for prediction.
+     *
+     * @param featureValues JSON array of the feature values of the row, e.g. [6,148,72,35,0,33.6,0.627,50]
+     * @return              Future prediction for the row
+     * @throws              MLHttpClientException
+     */
+    public Future<Object> predict(String featureValues) throws MLHttpClientException {
+        PendingPrediction prediction = new PendingPrediction(featureValues);
+        synchronized (lock) {
+            if (closed) {
+                throw new MLHttpClientException("Prediction batcher has been closed.");
+            }
+            queue.add(prediction);
+        }
+        return prediction.result;
+    }
+
+    /**
+     * @return  Number of batches sent for each batch size, indexed by the batch size
+     */
+    public long[] getBatchSizeHistogram() {
+        return toArray(batchSizeHistogram);
+    }
+
+    /**
+     * @return  Number of rows for each queue wait bucket. Bucket i counts rows which waited at least 2^(i-1) and
+     *          less than 2^i microseconds before their batch was sent.
+     */
+    public long[] getQueueWaitHistogram() {
+        return toArray(queueWaitHistogram);
+    }
+
+    /**
+     * Stop sending batches. Predictions still in the queue fail.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        dispatchers.shutdownNow();
+        List<PendingPrediction> remaining = new ArrayList<PendingPrediction>();
+        queue.drainTo(remaining);
+        fail(remaining, new MLHttpClientException("Prediction batcher has been closed."));
+    }
+
+    private void send(List<PendingPrediction> batch) {
+        long sentAt = System.nanoTime();
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++) {
+            PendingPrediction prediction = batch.get(i);
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(prediction.featureValues);
+            long waitMicros = TimeUnit.NANOSECONDS.toMicros(sentAt - prediction.queuedAt);
+            queueWaitHistogram.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(waitMicros),
+                    QUEUE_WAIT_BUCKETS - 1));
+        }
+        payload.append(']');
+        batchSizeHistogram.incrementAndGet(batch.size());
+
+        try {
+            CloseableHttpResponse response = mlHttpClient.doHttpPost(resourcePath, payload.toString());
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                response.close();
+                throw new MLHttpClientException("Unexpected response " + statusCode + " for a batch of "
+                        + batch.size() + " predictions.");
+            }
+            JSONArray predictions = new JSONArray(mlHttpClient.getResponseAsString(response));
+            if (predictions.length() != batch.size()) {
+                throw new MLHttpClientException("Expected " + batch.size() + " predictions but received "
+                        + predictions.length());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.completed(predictions.get(i));
+            }
+        } catch (Exception e) {
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(List<PendingPrediction> batch, Exception e) {
+        for (PendingPrediction prediction : batch) {
+            prediction.result.failed(e);
+        }
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Collects rows from the queue into batches and sends them.
+     */
+    private class Dispatcher implements Runnable {
+
+        @Override
+        public void run() {
+            List<PendingPrediction> batch = new ArrayList<PendingPrediction>(maxBatchSize);
+            try {
+                while (!closed) {
+                    PendingPrediction first = queue.take();
+                    batch.add(first);
+                    long deadline = first.queuedAt + batchWindowNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        PendingPrediction next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                                : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    send(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                fail(batch, new MLHttpClientException("Prediction batcher has been closed.", e));
+            }
+        }
+    }
+
+    private static class PendingPrediction {
+
+        private final String featureValues;
+        private final long queuedAt;
+        private final BasicFuture<Object> result;
+
+        PendingPrediction(String featureValues) {
+            this.featureValues = featureValues;
+            this.queuedAt = System.nanoTime();
+            this.result = new BasicFuture<Object>(null);
+        }
+    }
+}
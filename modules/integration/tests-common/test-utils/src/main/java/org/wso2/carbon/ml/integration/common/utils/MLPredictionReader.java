@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.integration.common.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+/**
+ * Reads predictions from a prediction response one at a time, without buffering the whole response. Both a single
+ * JSON array of predictions and newline-delimited JSON (one prediction per line) are supported. The response is
+ * closed once the last prediction has been read.
+ */
+public class MLPredictionReader {
+
+    private CloseableHttpResponse response;
+    private BufferedReader reader;
+    private JSONTokener tokener;
+    private boolean delimited;
+    private boolean started;
+    private boolean finished;
+    private boolean hasPending;
+    // Whether the whole response has been read, so that the connection can be reused
+    private boolean endOfResponse;
+
+    /**
+     * @param response  Prediction response, closed if it has no content or its content cannot be read
+     * @throws          MLHttpClientException
+     */
+    public MLPredictionReader(CloseableHttpResponse response) throws MLHttpClientException {
+        this.response = response;
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            closeResponse();
+            throw new MLHttpClientException("Prediction response has no content, status: "
+                    + response.getStatusLine().getStatusCode());
+        }
+        try {
+            this.reader = new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            closeResponse();
+            throw new MLHttpClientException("Failed to read the prediction response.", e);
+        }
+        this.tokener = new JSONTokener(reader);
+        Header contentType = entity.getContentType();
+        this.delimited = contentType != null
+                && contentType.getValue().startsWith(MLIntegrationTestConstants.CONTENT_TYPE_APPLICATION_NDJSON);
+    }
+
+    /**
+     * @return  true if there are more predictions to be read
+     * @throws  MLHttpClientException
+     */
+    public boolean hasNext() throws MLHttpClientException {
+        if (!hasPending && !finished) {
+            try {
+                advance();
+            } catch (JSONException e) {
+                close();
+                throw new MLHttpClientException("Failed to parse the prediction response.", e);
+            }
+        }
+        return hasPending;
+    }
+
+    /**
+     * @return  The next prediction; a String, Number, Boolean, JSONObject or JSONArray
+     * @throws  MLHttpClientException
+     */
+    public Object next() throws MLHttpClientException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more predictions in the response.");
+        }
+        hasPending = false;
+        try {
+            char first = tokener.nextClean();
+            tokener.back();
+            Object prediction = tokener.nextValue();
+            // org.json accepts unquoted text such as "1 2" as a string, which is not valid JSON
+            if (prediction instanceof String && first != '"') {
+                throw tokener.syntaxError("Invalid prediction value: " + prediction);
+            }
+            return prediction;
+        } catch (JSONException e) {
+            close();
+            throw new MLHttpClientException("Failed to parse the prediction response.", e);
+        }
+    }
+
+    /**
+     * Release the underlying connection. Called automatically once all the predictions have been read. If the response
+     * has not been read to the end, the connection is aborted rather than draining the rest of the response.
+     *
+     * @throws MLHttpClientException
+     */
+    public void close() throws MLHttpClientException {
+        finished = true;
+        hasPending = false;
+        if (!endOfResponse) {
+            closeResponse();
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // the connection has already been aborted
+            }
+            return;
+        }
+        try {
+            reader.close();
+            response.close();
+        } catch (IOException e) {
+            throw new MLHttpClientException("Failed to close the prediction response.", e);
+        }
+    }
+
+    private void closeResponse() {
+        try {
+            response.close();
+        } catch (IOException ignored) {
+            // the connection is discarded by the pool
+        }
+    }
+
+    /**
+     * Move the tokener to the start of the next prediction, or mark the end of the response. In a JSON array,
+     * predictions must be separated by commas and nothing but whitespace may follow the closing bracket.
+     */
+    private void advance() throws JSONException, MLHttpClientException {
+        char c = tokener.nextClean();
+        if (!delimited) {
+            if (!started) {
+                if (c != '[') {
+                    throw tokener.syntaxError("A JSON array of predictions must begin with '['");
+                }
+                started = true;
+                c = tokener.nextClean();
+                if (c == ']') {
+                    endArray();
+                    return;
+                }
+            } else if (c == ']') {
+                endArray();
+                return;
+            } else if (c == ',') {
+                c = tokener.nextClean();
+                if (c == ']') {
+                    throw tokener.syntaxError("Expected a prediction after ','");
+                }
+            } else if (c == 0) {
+                throw tokener.syntaxError("Prediction array ended without ']'");
+            } else {
+                throw tokener.syntaxError("Expected ',' or ']' between predictions");
+            }
+            if (c == 0) {
+                throw tokener.syntaxError("Prediction array ended without ']'");
+            }
+        } else if (c == 0) {
+            endOfResponse = true;
+            close();
+            return;
+        }
+        tokener.back();
+        hasPending = true;
+    }
+
+    private void endArray() throws JSONException, MLHttpClientException {
+        if (tokener.nextClean() != 0) {
+            throw tokener.syntaxError("Unexpected content after the prediction array");
+        }
+        endOfResponse = true;
+        close();
+    }
+}
@@ -76,7 +76,7 @@ public class MLTestUtils extends MLBaseTest {
      * @param modelName
      * @param mlHttpclient
      * @param timeout - max time to check the status
-     * @param frequency - time interval
+     * @param frequency - max time interval between two checks
      * @return
      * @throws MLHttpClientException
      * @throws JSONException
@@ -84,26 +84,9 @@ public class MLTestUtils extends MLBaseTest {
      */
     public static boolean checkModelStatusCompleted(String modelName, MLHttpClient mlHttpclient, long timeout,
             int frequency) throws MLHttpClientException, JSONException, IOException {
-        boolean status = false;
-        int totalTime = 0;
-        while (!status && timeout >= totalTime) {
-            CloseableHttpResponse response = mlHttpclient.doHttpGet("/api/models/" + modelName);
-            BufferedReader bufferedReader = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
-            JSONObject responseJson = new JSONObject(bufferedReader.readLine());
-            bufferedReader.close();
-            response.close();
-
-            // Checks whether status is equal to Complete.
-            status = responseJson.getString("status").equals("Complete");
-            try {
-                Thread.sleep(frequency);
-            } catch (InterruptedException ignore) {
-            }
-
-            totalTime += frequency;
-        }
-        return status;
+        String status = mlHttpclient.waitForModelStatus(modelName, MLIntegrationTestConstants.MODEL_STATUS_COMPLETE,
+                timeout, frequency);
+        return MLIntegrationTestConstants.MODEL_STATUS_COMPLETE.equals(status);
     }
 
     /**
@@ -111,7 +94,7 @@ public class MLTestUtils extends MLBaseTest {
      * @param modelName
      * @param mlHttpclient
      * @param timeout - max time to check the status
-     * @param frequency - time interval
+     * @param frequency - max time interval between two checks
      * @return
      * @throws MLHttpClientException
      * @throws JSONException
@@ -120,26 +103,9 @@ public class MLTestUtils extends MLBaseTest {
 
     public static boolean checkModelStatusFailed(String modelName, MLHttpClient mlHttpclient, long timeout,
             int frequency) throws MLHttpClientException, JSONException, IOException {
-        boolean status = false;
-        int totalTime = 0;
-        while (!status && timeout >= totalTime) {
-            CloseableHttpResponse response = mlHttpclient.doHttpGet("/api/models/" + modelName);
-            BufferedReader bufferedReader = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
-            JSONObject responseJson = new JSONObject(bufferedReader.readLine());
-            bufferedReader.close();
-            response.close();
-
-            // Checks whether status is equal to Failed.
-            status = responseJson.getString("status").equals("Failed");
-            try {
-                Thread.sleep(frequency);
-            } catch (InterruptedException ignore) {
-            }
-
-            totalTime += frequency;
-        }
-        return status;
+        String status = mlHttpclient.waitForModelStatus(modelName, MLIntegrationTestConstants.MODEL_STATUS_FAILED,
+                timeout, frequency);
+        return MLIntegrationTestConstants.MODEL_STATUS_FAILED.equals(status);
     }
 
     /**
@@ -159,7 +125,7 @@ public class MLTestUtils extends MLBaseTest {
         response.close();
 
         // Checks whether status is equal to Complete.
-        boolean status = responseJson.getString("status").equals("Complete");
+        boolean status = responseJson.getString("status").equals(MLIntegrationTestConstants.MODEL_STATUS_COMPLETE);
         return status;
     }
 
@@ -180,7 +146,7 @@ public class MLTestUtils extends MLBaseTest {
         analysisName = algorithmName + versionSetId;
 
         // Create an analysis
-        mlHttpclient.createAnalysis(analysisName, projectID);
+        mlHttpclient.createAnalysis(analysisName, projectID).close();
         analysisId = mlHttpclient.getAnalysisId(projectID, analysisName);
         return createModelWithConfigurations(algorithmName, algorithmType, response, trainDataFraction, projectID,
                 versionSetId, analysisId, mlHttpclient);
@@ -210,7 +176,7 @@ public class MLTestUtils extends MLBaseTest {
         analysisName = algorithmName + versionSetId;
 
         // Create an analysis
-        mlHttpclient.createAnalysis(analysisName, projectID);
+        mlHttpclient.createAnalysis(analysisName, projectID).close();
         analysisId = mlHttpclient.getAnalysisId(projectID, analysisName);
         return createModelWithConfigurations(algorithmName, algorithmType, response, trainDataFraction, normalLabels,
                 newNormalLabel, newAnomalyLabel, normalization, projectID, versionSetId, analysisId, mlHttpclient);
@@ -235,7 +201,7 @@ public class MLTestUtils extends MLBaseTest {
         analysisName = algorithmName + versionSetId;
 
         // Create an analysis
-        mlHttpclient.createAnalysis(analysisName, projectID);
+        mlHttpclient.createAnalysis(analysisName, projectID).close();
         analysisId = mlHttpclient.getAnalysisId(projectID, analysisName);
         return createModelWithConfigurations(algorithmName, algorithmType, userVariable, productVariable,
                 observations, type, trainDataFraction, projectID, versionSetId, analysisId, mlHttpclient);
@@ -255,14 +221,14 @@ public class MLTestUtils extends MLBaseTest {
     public static String createModelWithConfigurations(String algorithmName, String algorithmType, String response,
             String trainDataFraction, int projectID, int versionSetId, int analysisId, MLHttpClient mlHttpclient)
                     throws MLHttpClientException, IOException, JSONException {
-        mlHttpclient.setFeatureDefaults(analysisId);
+        mlHttpclient.setFeatureDefaults(analysisId).close();
 
         // Set Model Configurations
         mlHttpclient.setModelConfiguration(analysisId,
-                setModelConfigurations(algorithmName, algorithmType, response, trainDataFraction));
+                setModelConfigurations(algorithmName, algorithmType, response, trainDataFraction)).close();
 
         // Set default Hyper-parameters
-        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null);
+        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null).close();
 
         // Create a model
         CloseableHttpResponse httpResponse = mlHttpclient.createModel(analysisId, versionSetId);
@@ -293,14 +259,14 @@ public class MLTestUtils extends MLBaseTest {
             String trainDataFraction, String normalLabels, String newNormalLabel, String newAnomalyLabel,
             String normalization, int projectID, int versionSetId, int analysisId, MLHttpClient mlHttpclient)
                     throws MLHttpClientException, IOException, JSONException {
-        mlHttpclient.setFeatureDefaults(analysisId);
+        mlHttpclient.setFeatureDefaults(analysisId).close();
 
         // Set Model Configurations
         mlHttpclient.setModelConfiguration(analysisId, setAnomalyDetectionModelConfigurations(algorithmName, algorithmType, response,
-                        trainDataFraction, normalLabels, newNormalLabel, newAnomalyLabel, normalization));
+                        trainDataFraction, normalLabels, newNormalLabel, newAnomalyLabel, normalization)).close();
 
         // Set default Hyper-parameters
-        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null);
+        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null).close();
 
         // Create a model
         CloseableHttpResponse httpResponse = mlHttpclient.createModel(analysisId, versionSetId);
@@ -327,14 +293,14 @@ public class MLTestUtils extends MLBaseTest {
     public static String createModelWithConfigurations(String algorithmName, String algorithmType, String userVariable,
             String productVariable, String observations, String type, String trainDataFraction, int projectID, int versionSetId,
             int analysisId, MLHttpClient mlHttpclient) throws MLHttpClientException, IOException, JSONException {
-        mlHttpclient.setFeatureDefaults(analysisId);
+        mlHttpclient.setFeatureDefaults(analysisId).close();
 
         // Set Model Configurations
         mlHttpclient.setModelConfiguration(analysisId, setModelConfigurations(algorithmName, algorithmType,
-                userVariable, productVariable, observations, type, trainDataFraction));
+                userVariable, productVariable, observations, type, trainDataFraction)).close();
 
         // Set default Hyper-parameters
-        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null);
+        mlHttpclient.doHttpPost("/api/analyses/" + analysisId + "/hyperParams/defaults", null).close();
 
         // Create a model
         CloseableHttpResponse httpResponse = mlHttpclient.createModel(analysisId, versionSetId);
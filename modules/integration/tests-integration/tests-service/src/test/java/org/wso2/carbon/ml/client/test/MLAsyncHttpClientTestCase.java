@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.ml.client.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.ml.integration.common.utils.MLAsyncHttpClient;
+import org.wso2.carbon.ml.integration.common.utils.MLBaseTest;
+import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Class contains test cases related to the non-blocking http client
+ */
+@Test(groups = "asyncHttpClient")
+public class MLAsyncHttpClientTestCase extends MLBaseTest {
+
+    private static final int NUMBER_OF_REQUESTS = 50;
+    private static final int MAX_IN_FLIGHT_REQUESTS = 10;
+    private static final long BLOCKED_SUBMISSION_WAIT = 2;
+    private static final long RESPONSE_TIMEOUT = 30;
+
+    private MLAsyncHttpClient mlAsyncHttpClient;
+
+    @BeforeClass(alwaysRun = true)
+    public void initTest() throws Exception {
+        super.init();
+        mlAsyncHttpClient = new MLAsyncHttpClient(instance, userInfo, MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    /**
+     * Submit more requests than the in-flight limit and check that all of them complete.
+     *
+     * @throws Exception
+     */
+    @Test(description = "Send concurrent requests through the async client")
+    public void testConcurrentRequests() throws Exception {
+        List<Future<HttpResponse>> responses = new ArrayList<Future<HttpResponse>>();
+        for (int i = 0; i < NUMBER_OF_REQUESTS; i++) {
+            responses.add(mlAsyncHttpClient.doHttpGet("/api/configs/algorithms", null));
+        }
+        for (Future<HttpResponse> response : responses) {
+            assertEquals("Unexpected response received", Response.Status.OK.getStatusCode(), response.get()
+                    .getStatusLine().getStatusCode());
+        }
+    }
+
+    /**
+     * Hold {@link #MAX_IN_FLIGHT_REQUESTS} requests open on a local endpoint and check that one more submission
+     * blocks until they complete, and that all the slots are released afterwards.
+     *
+     * @throws Exception
+     */
+    @Test(description = "Block submissions while the in-flight limit is reached")
+    public void testInFlightLimit() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(Response.Status.OK.getStatusCode(), -1);
+                exchange.close();
+            }
+        });
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+
+        final MLAsyncHttpClient boundedClient = new MLAsyncHttpClient("http://localhost:"
+                + server.getAddress().getPort(), userInfo.getUserName(), userInfo.getPassword(),
+                MAX_IN_FLIGHT_REQUESTS);
+        final CountDownLatch responses = new CountDownLatch(MAX_IN_FLIGHT_REQUESTS + 1);
+        final AtomicInteger successfulResponses = new AtomicInteger();
+        final FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
+                    successfulResponses.incrementAndGet();
+                }
+                responses.countDown();
+            }
+
+            @Override
+            public void failed(Exception e) {
+                responses.countDown();
+            }
+
+            @Override
+            public void cancelled() {
+                responses.countDown();
+            }
+        };
+        ExecutorService submitter = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < MAX_IN_FLIGHT_REQUESTS; i++) {
+                boundedClient.doHttpGet("/", callback);
+            }
+            assertEquals("In-flight slots were not taken", 0, boundedClient.getAvailableRequestSlots());
+
+            Future<Void> blockedSubmission = submitter.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws MLHttpClientException {
+                    boundedClient.doHttpGet("/", callback);
+                    return null;
+                }
+            });
+            try {
+                blockedSubmission.get(BLOCKED_SUBMISSION_WAIT, TimeUnit.SECONDS);
+                fail("Submission did not block while the in-flight limit was reached");
+            } catch (TimeoutException expected) {
+                // the submission is waiting for a slot
+            }
+
+            gate.countDown();
+            blockedSubmission.get(RESPONSE_TIMEOUT, TimeUnit.SECONDS);
+            assertTrue("Not all the requests completed", responses.await(RESPONSE_TIMEOUT, TimeUnit.SECONDS));
+            assertEquals("Unexpected number of successful responses", MAX_IN_FLIGHT_REQUESTS + 1,
+                    successfulResponses.get());
+            // Slots are released before the callbacks are notified
+            assertEquals("In-flight slots were not released", MAX_IN_FLIGHT_REQUESTS,
+                    boundedClient.getAvailableRequestSlots());
+        } finally {
+            gate.countDown();
+            submitter.shutdownNow();
+            boundedClient.close();
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() throws MLHttpClientException {
+        mlAsyncHttpClient.close();
+        super.destroy();
+    }
+}
@@ -21,6 +21,8 @@ package org.wso2.carbon.ml.lifecycle.test;
 import static org.testng.AssertJUnit.assertEquals;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.ws.rs.core.Response;
 
@@ -31,6 +33,7 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.wso2.carbon.ml.MLTestUtils;
+import org.wso2.carbon.ml.integration.common.utils.MLAsyncHttpClient;
 import org.wso2.carbon.ml.integration.common.utils.MLBaseTest;
 import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
 import org.wso2.carbon.ml.integration.common.utils.MLIntegrationTestConstants;
@@ -134,16 +137,50 @@ public class Dataset11RecommendationTestCase extends MLBaseTest {
         assertEquals(3, recommendations.length());
     }
 
+    /**
+     * A test case for getting product recommendations for a batch of users.
+     *
+     * @throws MLHttpClientException
+     * @throws JSONException
+     */
+    private void testGetProductRecommendationsForUsers() throws MLHttpClientException, JSONException {
+        int[] userIds = { 1, 2, 3, 4 };
+        final Map<Integer, String> recommendations = new ConcurrentHashMap<Integer, String>();
+        MLAsyncHttpClient mlAsyncHttpClient = new MLAsyncHttpClient(instance, userInfo, 2);
+        try {
+            int failures = mlAsyncHttpClient.getProductRecommendations(modelId, userIds, 3,
+                    new MLAsyncHttpClient.RecommendationCallback() {
+                        @Override
+                        public void completed(int id, String reply) {
+                            recommendations.put(id, reply);
+                        }
+
+                        @Override
+                        public void failed(int id, Exception e) {
+                            // counted in the returned number of failures
+                        }
+                    });
+            assertEquals("Recommendations could not be retrieved for all the users", 0, failures);
+        } finally {
+            mlAsyncHttpClient.close();
+        }
+        for (int userId : userIds) {
+            assertEquals(3, new JSONArray(recommendations.get(userId)).length());
+        }
+    }
+
     /**
      * A test case for getting product recommendations from invalid model ID.
      *
      * @throws MLHttpClientException
      * @throws JSONException
+     * @throws IOException
      */
-    private void testGetProductRecommendationInvalidModelId() throws MLHttpClientException, JSONException {
+    private void testGetProductRecommendationInvalidModelId() throws MLHttpClientException, JSONException, IOException {
         response = mlHttpclient.doHttpGet("/api/models/" + 999 + "/product-recommendations?user-id=1&no-of-products=3");
         assertEquals("Unexpected response received", Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
                 response.getStatusLine().getStatusCode());
+        response.close();
     }
 
     /**
@@ -151,11 +188,13 @@ public class Dataset11RecommendationTestCase extends MLBaseTest {
      *
      * @throws MLHttpClientException
      * @throws JSONException
+     * @throws IOException
      */
-    private void testGetUserRecommendationInvalidModelId() throws MLHttpClientException, JSONException {
+    private void testGetUserRecommendationInvalidModelId() throws MLHttpClientException, JSONException, IOException {
         response = mlHttpclient.doHttpGet("/api/models/" + 999 + "/user-recommendations?product-id=123&no-of-users=2");
         assertEquals("Unexpected response received", Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
                 response.getStatusLine().getStatusCode());
+        response.close();
     }
 
     /**
@@ -175,6 +214,7 @@ public class Dataset11RecommendationTestCase extends MLBaseTest {
         // Get recommendations for products and users
         testGetProductRecommendation();
         testGetUserRecommendation();
+        testGetProductRecommendationsForUsers();
 
         // Get product recommendation for invalid model ID
         testGetProductRecommendationInvalidModelId();
@@ -19,8 +19,13 @@
 package org.wso2.carbon.ml.lifecycle.test;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.ws.rs.core.Response;
 
@@ -34,6 +39,8 @@ import org.wso2.carbon.ml.MLTestUtils;
 import org.wso2.carbon.ml.integration.common.utils.MLBaseTest;
 import org.wso2.carbon.ml.integration.common.utils.MLHttpClient;
 import org.wso2.carbon.ml.integration.common.utils.MLIntegrationTestConstants;
+import org.wso2.carbon.ml.integration.common.utils.MLPredictionBatcher;
+import org.wso2.carbon.ml.integration.common.utils.MLPredictionReader;
 import org.wso2.carbon.ml.integration.common.utils.exception.MLHttpClientException;
 import org.wso2.carbon.ml.integration.common.utils.exception.MLIntegrationBaseTestException;
 
@@ -90,17 +97,33 @@ public class Dataset1DiabetesTestCase extends MLBaseTest {
         }
     }
 
+    /**
+     * A test case for parsing undecoded predictions into a primitive buffer
+     *
+     * @throws MLHttpClientException
+     */
+    private void testPredictDiabetesAsDoubles() throws MLHttpClientException {
+        String payload = "[[1,89,66,23,94,28.1,0.167,21],[2,197,70,45,543,30.5,0.158,53]]";
+        response = mlHttpclient.doHttpPost("/api/models/" + modelId + "/predict?skipDecoding=true", payload);
+        assertEquals("Unexpected response received", Response.Status.OK.getStatusCode(), response.getStatusLine()
+                .getStatusCode());
+        double[] predictions = new double[2];
+        assertEquals(2, mlHttpclient.getResponseAsDoubles(response, predictions));
+    }
+
     /**
      * A test case for predicting with a dataset incompatible with the trained dataset in terms of number of features
      *
      * @throws MLHttpClientException
      * @throws JSONException
+     * @throws IOException
      */
-    private void testPredictDiabetesInvalidNumberOfFeatures() throws MLHttpClientException, JSONException {
+    private void testPredictDiabetesInvalidNumberOfFeatures() throws MLHttpClientException, JSONException, IOException {
         String payload = "[[1,89,66,23,94,28.1,0.167],[2,197,70,45,543,30.5,0.158]]";
         response = mlHttpclient.doHttpPost("/api/models/" + modelId + "/predict", payload);
         assertEquals("Unexpected response received", Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
                 response.getStatusLine().getStatusCode());
+        response.close();
     }
 
     /**
@@ -109,13 +132,15 @@ public class Dataset1DiabetesTestCase extends MLBaseTest {
      *
      * @throws MLHttpClientException
      * @throws JSONException
+     * @throws IOException
      */
-    private void testPredictDiabetesInvalidNumericalFeatures() throws MLHttpClientException, JSONException {
+    private void testPredictDiabetesInvalidNumericalFeatures() throws MLHttpClientException, JSONException, IOException {
         // One of the values is non-numerical
         String payload = "[[1,89,66,23,94,28afdc.1,0.167,21],[2,197,70,45,543,30.5,0.158,53]]";
         response = mlHttpclient.doHttpPost("/api/models/" + modelId + "/predict", payload);
         assertEquals("Unexpected response received", Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
                 response.getStatusLine().getStatusCode());
+        response.close();
     }
     
     /**
@@ -133,6 +158,52 @@ public class Dataset1DiabetesTestCase extends MLBaseTest {
         assertEquals(7, predictions.length());
     }
 
+    /**
+     * A test case for reading predictions one at a time from a prediction response for a file.
+     * 
+     * @throws MLHttpClientException
+     */
+    private void testReadPredictionsFromFile() throws MLHttpClientException {
+        MLPredictionReader predictions = mlHttpclient.readPredictionsFromCSV(modelId,
+                MLIntegrationTestConstants.DIABETES_DATASET_TEST);
+        int count = 0;
+        while (predictions.hasNext()) {
+            predictions.next();
+            count++;
+        }
+        assertEquals(7, count);
+    }
+
+    /**
+     * A test case for predicting single rows concurrently through a prediction batcher.
+     * 
+     * @throws MLHttpClientException
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private void testPredictDiabetesBatched() throws MLHttpClientException, InterruptedException,
+            ExecutionException {
+        MLPredictionBatcher batcher = new MLPredictionBatcher(mlHttpclient, modelId, false, 8, 5, 2);
+        try {
+            List<Future<Object>> predictions = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 20; i++) {
+                predictions.add(batcher.predict(i % 2 == 0 ? "[1,89,66,23,94,28.1,0.167,21]"
+                        : "[2,197,70,45,543,30.5,0.158,53]"));
+            }
+            for (Future<Object> prediction : predictions) {
+                assertNotNull("Expected a prediction", prediction.get());
+            }
+            long batchedRows = 0;
+            long[] batchSizes = batcher.getBatchSizeHistogram();
+            for (int size = 0; size < batchSizes.length; size++) {
+                batchedRows += size * batchSizes[size];
+            }
+            assertEquals(20, batchedRows);
+        } finally {
+            batcher.close();
+        }
+    }
+
     /**
      * A test case for building a model with the given learning algorithm
      * 
@@ -261,12 +332,15 @@ public class Dataset1DiabetesTestCase extends MLBaseTest {
      */
     @Test(description = "Build a Logistic Regression model and predict for Diabetes dataset", groups = "createLogisticRegressionDiabetes", dependsOnGroups = "createStackedAutoencodersModelDiabetes")
     public void testBuildLogisticRegressionModel()
-            throws MLHttpClientException, IOException, JSONException, InterruptedException {
+            throws MLHttpClientException, IOException, JSONException, InterruptedException, ExecutionException {
         buildModelWithLearningAlgorithm("LOGISTIC_REGRESSION", MLIntegrationTestConstants.CLASSIFICATION);
         // Predict using built Linear Regression model
         testPredictDiabetes();
         testPredictDiabetes(true);
+        testPredictDiabetesAsDoubles();
         testPredictDiabetesFromFile();
+        testReadPredictionsFromFile();
+        testPredictDiabetesBatched();
         testExportAsPMML(modelId);
         testPublishAsPMML(modelId);
     }